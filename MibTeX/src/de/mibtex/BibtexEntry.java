@@ -9,9 +9,12 @@ package de.mibtex;
 import de.mibtex.citationservice.CitationEntry;
 import org.jbibtex.BibTeXEntry;
 import org.jbibtex.Key;
-import org.jbibtex.Value;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -28,13 +31,15 @@ public class BibtexEntry {
 	public List<Key> KEY_LIST = new ArrayList<>();
 	// public static final Key KEY_TT_TAGS = new Key(BibtexViewer.TAGS);
 
-	public BibTeXEntry entry = null;
-	
 	public String type = UNKNOWN_ATTRIBUTE;
 	public String key = UNKNOWN_ATTRIBUTE;
 
 	public String author = UNKNOWN_ATTRIBUTE;
-	public List<String> authorList = new ArrayList<>();
+	/** The names of the authors as shown by the exports. */
+	public List<String> authorList = Collections.emptyList();
+	public List<PersonName> authorNames = Collections.emptyList();
+	/** The ids of the authors in {@link InternPool#AUTHORS}. */
+	int[] authorIds = new int[0];
 	public boolean authorsAreEditors = false;
 
 	public String title = UNKNOWN_ATTRIBUTE;
@@ -46,10 +51,21 @@ public class BibtexEntry {
 	public int year = 0;
 
 	public List<String> tags = new ArrayList<>();
-	public LinkedHashMap<String, List<String>> tagList = new LinkedHashMap<>();
+	/** The tags by the names of their fields in the order of the fields. */
+	public Map<String, List<String>> tagList = Collections.emptyMap();
+	/** The ids of the fields with tags in {@link InternPool#TAG_FIELDS}. */
+	int[] tagFieldIds = new int[0];
+	/** The ids of the tags of each field in {@link InternPool#TAGS}. */
+	int[][] tagIds = new int[0][];
 
 	public int citations = CitationEntry.NOT_IN_CITATION_SERVICE;
 	public long lastUpdate = 0;
+
+	/**
+	 * All fields of this entry (including those inherited by a cross reference)
+	 * with lower-case field names as keys and their user strings as values.
+	 */
+	Map<String, String> attributes = new LinkedHashMap<>();
 	
 	static {
 		MONTH_NAME_TO_NUMBER = new HashMap<>();
@@ -67,13 +83,15 @@ public class BibtexEntry {
 		MONTH_NAME_TO_NUMBER.put("december", 12);
 	}
 
-	public BibtexEntry(BibTeXEntry entry) {
-		for (String tagKey : BibtexViewer.TAGS) {
-			KEY_LIST.add(new Key(tagKey));
-		}
-		this.entry = entry;
-		parseKey();
-		parseType();
+	/**
+	 * Creates an entry of the given type and key from its fields as read by
+	 * {@link BibtexReader}.
+	 */
+	BibtexEntry(String type, String key, Map<String, String> attributes) {
+		this();
+		this.type = type;
+		this.key = key;
+		this.attributes = attributes;
 		parseAuthor();
 		parseTitle();
 		parseVenue();
@@ -82,6 +100,16 @@ public class BibtexEntry {
 		parseDOIandURL();
 	}
 
+	/**
+	 * Creates an empty entry whose fields are filled by the caller (e.g., when
+	 * reading a {@link BibtexSnapshot}).
+	 */
+	BibtexEntry() {
+		for (String tagKey : BibtexViewer.TAGS) {
+			KEY_LIST.add(new Key(tagKey));
+		}
+	}
+
 	public BibtexEntry(String key, String author, String title, String venue, List<String> tags, int year,
 			int citations) {
 		this.key = key;
@@ -138,6 +166,22 @@ public class BibtexEntry {
 		return FileUtils.concat(BibtexViewer.PDF_DIR, getPDFFile().toString());
 	}
 
+	/**
+	 * Returns whether the comments of this entry exist, as far as the
+	 * {@link DocumentIndex} knows.
+	 */
+	public boolean hasComments() {
+		return DocumentIndex.exists(getCommentsPath());
+	}
+
+	/**
+	 * Returns whether the PDF of this entry exists, as far as the
+	 * {@link DocumentIndex} knows.
+	 */
+	public boolean hasPDF() {
+		return DocumentIndex.exists(getPDFPath());
+	}
+
 	@Deprecated
 	public File getOldPDFPath() {
 		String pdf = "";
@@ -187,70 +231,49 @@ public class BibtexEntry {
 		return getLastnameOfAuthorNo(0);
 	}
 
-	void parseKey() {
-		try {
-			if (key.equals(UNKNOWN_ATTRIBUTE)) {
-				key = entry.getKey().getValue();
+	void parseAuthor() {
+		if (author.equals(UNKNOWN_ATTRIBUTE)) {
+			String field = attributes.get(BibTeXEntry.KEY_AUTHOR.getValue());
+			authorsAreEditors = false;
+			
+			if (field == null) {
+				field = attributes.get(BibTeXEntry.KEY_EDITOR.getValue());
+				authorsAreEditors = true;
+			}
+			
+			if (field == null) {
+				author = EMPTY_ATTRIBUTE;
+				if (!isMisc()) {
+					System.err.println("[BibtexEntry.parseAuthor] Warning: " + key + " does neither have authors nor editors!");
+				}
+			} else {
+				author = field;
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
 		}
+		NameParser names = NameParser.parse(author);
+		author = names.text.toString();
+		setAuthors(names.names);
 	}
 
-	void parseAuthor() {
-		try {
-			if (author.equals(UNKNOWN_ATTRIBUTE)) {
-				Value field = entry.getField(BibTeXEntry.KEY_AUTHOR);
-				authorsAreEditors = false;
-				
-				if (field == null) {
-					field = entry.getField(BibTeXEntry.KEY_EDITOR);
-					authorsAreEditors = true;
-				}
-				
-				if (field == null) {
-					author = EMPTY_ATTRIBUTE;
-					if (!isMisc()) {
-						System.err.println("[BibtexEntry.parseAuthor] Warning: " + key + " does neither have authors nor editors!");
-					}
-				} else {
-					author = field.toUserString();
-				}
-			}
-			author = replaceUmlauts(author);
-			author = author.replace(" and ", "; ");
-			while (author.contains(",")) {
-				int comma = author.indexOf(",");
-				int before = author.lastIndexOf("; ", comma) + 2;
-				if (before < 2)
-					before = 0;
-				int after = author.indexOf("; ", comma);
-				if (after < 0)
-					after = author.length();
-				author = author.substring(0, before) + author.substring(comma + 1, after) + " "
-						+ author.substring(before, comma) + author.substring(after);
-			}
-			author = author.replace("; ", ", ");
-			StringTokenizer tokenizer = new StringTokenizer(author, ",");
-			while (tokenizer.hasMoreTokens())
-				authorList.add(tokenizer.nextToken().trim());
-		} catch (Exception e) { // What types of exceptions are expected here?
-			if (authorList.equals(UNKNOWN_ATTRIBUTE))
-				authorList.add(author);
-			e.printStackTrace();
+	void setAuthors(List<PersonName> names) {
+		authorIds = new int[names.size()];
+		for (int i = 0; i < authorIds.length; i++) {
+			authorIds[i] = InternPool.AUTHORS.id(names.get(i));
 		}
+		authorNames = InternPool.AUTHORS.asList(authorIds);
+		authorList = InternPool.AUTHORS.asList(authorIds, PersonName::toString);
 	}
 
 	void parseTitle() {
 		if (title.equals(UNKNOWN_ATTRIBUTE)) {
-			Value field = entry.getField(BibTeXEntry.KEY_TITLE);
+			String field = attributes.get(BibTeXEntry.KEY_TITLE.getValue());
 			if (field == null) {
 				title = EMPTY_ATTRIBUTE;
 				if (!isMisc()) {
 					System.err.println("[BibtexEntry.parseTitle] Warning: " + key + " does not have a title!");
 				}
 			} else {
-				title = field.toUserString();
+				title = field;
 			}
 		}
 		title = replaceUmlauts(title);
@@ -258,39 +281,28 @@ public class BibtexEntry {
 
 	void parseVenue() {
 		if (venue.equals(UNKNOWN_ATTRIBUTE)) {
-			venue = "(" + entry.getType().getValue() + ")";
-			if (venue.equalsIgnoreCase("(incollection)"))
-				return;
-			try {
-				venue = entry.getField(BibTeXEntry.KEY_BOOKTITLE).toUserString();
-			} catch (Exception e) {
-			}
-			try {
-				venue = entry.getField(BibTeXEntry.KEY_JOURNAL).toUserString();
-			} catch (Exception e) {
+			venue = "(" + type + ")";
+			if (!venue.equalsIgnoreCase("(incollection)")) {
+				venue = attributes.getOrDefault(BibTeXEntry.KEY_BOOKTITLE.getValue(), venue);
+				venue = attributes.getOrDefault(BibTeXEntry.KEY_JOURNAL.getValue(), venue);
 			}
 		}
+		venue = InternPool.VENUES.intern(venue);
 	}
 
 	void parseDOIandURL() {
 		if (doi.equals(EMPTY_ATTRIBUTE)) {
-			try {
-				doi = entry.getField(BibTeXEntry.KEY_DOI).toUserString();
-			} catch (Exception e) {
-			}
+			doi = attributes.getOrDefault(BibTeXEntry.KEY_DOI.getValue(), EMPTY_ATTRIBUTE);
 		}
 		if (url.equals(EMPTY_ATTRIBUTE)) {
-			try {
-				url = entry.getField(BibTeXEntry.KEY_URL).toUserString();
-			} catch (Exception e) {
-			}
+			url = attributes.getOrDefault(BibTeXEntry.KEY_URL.getValue(), EMPTY_ATTRIBUTE);
 		}
 	}
 
 	void parseYear() {
 		if (year == 0) {
 			try {
-				String yearString = entry.getField(BibTeXEntry.KEY_YEAR).toUserString();
+				String yearString = attributes.get(BibTeXEntry.KEY_YEAR.getValue());
 				year = Integer.parseInt(yearString);
 			} catch (Exception e) {
 			}
@@ -300,20 +312,21 @@ public class BibtexEntry {
 	void parseTags() {
 		try {
 			if (tags.isEmpty()) {
+				Map<String, List<String>> tagsByKey = new LinkedHashMap<>();
 				for (Key key : KEY_LIST) {
 					List<String> tagsForKey = new ArrayList<>();
-					Value value = entry.getField(key);
-					if (value != null) {
-						String tag = value.toUserString();
+					String tag = attributes.get(key.getValue().toLowerCase());
+					if (tag != null) {
 						tag = replaceUmlauts(tag);
 						tags.add(tag);
 						StringTokenizer tokenizer = new StringTokenizer(tag, ",");
 						while (tokenizer.hasMoreTokens())
 							tagsForKey.add(tokenizer.nextToken().trim());
 
-						tagList.put(key.getValue(), tagsForKey);
+						tagsByKey.put(key.getValue(), tagsForKey);
 					}
 				}
+				setTagList(tagsByKey);
 				// tags = entry.getField(KEY_TT_TAGS).toUserString();
 			}
 
@@ -322,10 +335,81 @@ public class BibtexEntry {
 		}
 	}
 	
-	void parseType() {
-		type = entry.getType().getValue();
+	void setTagList(Map<String, List<String>> tagsByField) {
+		tagFieldIds = new int[tagsByField.size()];
+		tagIds = new int[tagsByField.size()][];
+		int i = 0;
+		for (Map.Entry<String, List<String>> field : tagsByField.entrySet()) {
+			tagFieldIds[i] = InternPool.TAG_FIELDS.id(field.getKey());
+			tagIds[i] = new int[field.getValue().size()];
+			for (int j = 0; j < tagIds[i].length; j++) {
+				tagIds[i][j] = InternPool.TAGS.id(field.getValue().get(j));
+			}
+			i++;
+		}
+		tagList = new TagList(tagFieldIds, tagIds);
 	}
-	
+
+	/**
+	 * An unmodifiable view of the tags by the names of their fields.
+	 */
+	private static class TagList extends AbstractMap<String, List<String>> {
+		private final int[] fieldIds;
+		private final int[][] tagIds;
+
+		TagList(int[] fieldIds, int[][] tagIds) {
+			this.fieldIds = fieldIds;
+			this.tagIds = tagIds;
+		}
+
+		@Override
+		public List<String> get(Object field) {
+			for (int i = 0; i < fieldIds.length; i++) {
+				if (InternPool.TAG_FIELDS.get(fieldIds[i]).equals(field)) {
+					return InternPool.TAGS.asList(tagIds[i]);
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public boolean containsKey(Object field) {
+			return get(field) != null;
+		}
+
+		@Override
+		public Set<Map.Entry<String, List<String>>> entrySet() {
+			return new AbstractSet<Map.Entry<String, List<String>>>() {
+				@Override
+				public Iterator<Map.Entry<String, List<String>>> iterator() {
+					return new Iterator<Map.Entry<String, List<String>>>() {
+						private int next = 0;
+
+						@Override
+						public boolean hasNext() {
+							return next < fieldIds.length;
+						}
+
+						@Override
+						public Map.Entry<String, List<String>> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							int i = next++;
+							return new SimpleImmutableEntry<>(InternPool.TAG_FIELDS.get(fieldIds[i]),
+									InternPool.TAGS.asList(tagIds[i]));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return fieldIds.length;
+				}
+			};
+		}
+	}
+
 	boolean isMisc() {
 		return "misc".equals(type);
 	}
@@ -343,82 +427,94 @@ public class BibtexEntry {
 	 * Returns an empty string if no such key could be found.
 	 */
 	public String getAttribute(org.jbibtex.Key attribKey) {
-		org.jbibtex.Value attrib = this.entry.getField(attribKey);
-		return attrib != null ? attrib.toUserString() : "";
+		return getAttribute(attribKey.getValue());
 	}
 	/**
 	 * Returns the value as string associated to the given bibtex key name.
 	 * Returns an empty string if no such key could be found.
 	 */
 	public String getAttribute(String attribKey) {
-		return getAttribute(new org.jbibtex.Key(attribKey));
+		return attributes.getOrDefault(attribKey.toLowerCase(), "");
 	}
 	
+	/**
+	 * Returns a fingerprint of everything an exporter may print about this
+	 * entry, namely all fields, the citations, and whether the PDF and comments
+	 * exist. Exporters compare fingerprints to find the entries that changed
+	 * since their last run.
+	 */
+	public long getFingerprint() {
+		StringBuilder content = new StringBuilder();
+		content.append(type).append('\0').append(key).append('\0');
+		for (Entry<String, String> attribute : attributes.entrySet()) {
+			content.append(attribute.getKey()).append('\0').append(attribute.getValue()).append('\0');
+		}
+		content.append(author).append('\0').append(authorList).append('\0').append(authorsAreEditors).append('\0');
+		content.append(title).append('\0').append(venue).append('\0').append(year).append('\0');
+		content.append(tags).append('\0').append(tagList).append('\0');
+		content.append(doi).append('\0').append(url).append('\0');
+		content.append(citations).append('\0').append(lastUpdate).append('\0');
+		content.append(hasPDF()).append('\0').append(hasComments());
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return ByteBuffer.wrap(digest.digest(content.toString().getBytes(StandardCharsets.UTF_8))).getLong();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Decodes the LaTeX in the given text to HTML in a single pass.
+	 * 
+	 * @see LatexDecoder
+	 */
 	public static String replaceUmlauts(String s) {
-		s = s.replace("\\\"{", "{\\\"");
-		s = s.replace("\\\"a", "&auml;");
-		s = s.replace("\\\"o", "&ouml;");
-		s = s.replace("\\\"u", "&uuml;");
-		s = s.replace("\\\"A", "&Auml;");
-		s = s.replace("\\\"O", "&Ouml;");
-		s = s.replace("\\\"U", "&Uuml;");
-		s = s.replace("\\ss", "&szlig;");
-		s = s.replace("\\&\\#536;", "S");
-		s = s.replace("\\&", "&amp;");
-		s = s.replace("\\#", "#");
-		s = s.replace("\\c", "");
-		s = s.replace("\\v", "");
-		s = s.replace("\\u", "");
-		s = s.replace("\\l", "l");
-		s = s.replace("\\i", "i");
-		s = s.replace("\\k", "");
-		s = s.replace("\\^", "");
-		s = s.replace("\\'", "");
-		s = s.replace("\\`", "");
-		s = s.replace("\\,", " ");
-		s = s.replace("\\~", "");
-		s = s.replace("\\\"", "");
-		s = s.replace("\\", "");
-		s = s.replace("---", "&#8211;");
-		s = s.replace("--", "&#8211;");
-		s = s.replace("{", "");
-		s = s.replace("}", "");
-		s = s.replaceAll("\\s+", " ");
-		return s;
+		return LatexDecoder.decode(s);
+	}
+
+	/**
+	 * Replaces entities and characters that are not safe in file names and URLs.
+	 * An en dash becomes &8211;, as the # has been removed before the entity in
+	 * all existing file names (e.g., of PDFs).
+	 */
+	public static final TextRewriter TO_URL;
+
+	static {
+		Map<String, String> replacements = new LinkedHashMap<>();
+		replacements.put("&auml;", "ae");
+		replacements.put("&ouml;", "oe");
+		replacements.put("&uuml;", "ue");
+		replacements.put("&Auml;", "Ae");
+		replacements.put("&Ouml;", "Oe");
+		replacements.put("ï¿½", "O");
+		replacements.put("&Uuml;", "Ue");
+		replacements.put("&szlig;", "ss");
+		replacements.put("&amp;", "and");
+		replacements.put("&#8211;", "&8211;");
+		replacements.put(":", "");
+		replacements.put("?", "");
+		replacements.put("\\", "");
+		replacements.put("/", "");
+		replacements.put("#", "");
+		TO_URL = new TextRewriter(replacements);
 	}
 
 	public static String toURL(String s) {
-		return toURL(s, new HashMap<>());
+		return TO_URL.rewrite(s);
 	}
-	
+
+	/**
+	 * Replaces like {@link #toURL(String)} with the given replacements taking
+	 * precedence. Callers using the same replacements repeatedly should keep a
+	 * rewriter created by {@link TextRewriter#withOverrides(Map)} instead.
+	 */
 	public static String toURL(String s, Map<String, String> overwrites) {
-		HashMap<String, String> replacements = new HashMap<>(overwrites);
-		replacements.putIfAbsent("&auml;", "ae");
-		replacements.putIfAbsent("&ouml;", "oe");
-		replacements.putIfAbsent("&uuml;", "ue");
-		replacements.putIfAbsent("&Auml;", "Ae");
-		replacements.putIfAbsent("&Ouml;", "Oe");
-		replacements.putIfAbsent("ï¿½", "O");
-		replacements.putIfAbsent("&Uuml;", "Ue");
-		replacements.putIfAbsent("&szlig;", "ss");
-		replacements.putIfAbsent("&amp;", "and");
-		replacements.putIfAbsent("&#8211;", "-");
-		replacements.putIfAbsent(":", "");
-		replacements.putIfAbsent("?", "");
-		replacements.putIfAbsent("\\", "");
-		replacements.putIfAbsent("/", "");
-		replacements.putIfAbsent("#", "");
-		
-		for (Entry<String, String> entry : replacements.entrySet()) {
-			s = s.replace(entry.getKey(), entry.getValue());
-		}
-		
-		return s;
+		return TO_URL.withOverrides(overwrites).rewrite(s);
 	}
 
 	@Override
 	public String toString() {
-		return "BibtexEntry [entry=" + entry + ", key=" + key + ", author=" + author + ", authorList=" + authorList
+		return "BibtexEntry [type=" + type + ", key=" + key + ", author=" + author + ", authorList=" + authorList
 				+ ", title=" + title + ", venue=" + venue + ", tags=" + tags + ", tagList=" + tagList + ", year=" + year
 				+ ", citations=" + citations + "]";
 	}
@@ -17,4 +17,13 @@ abstract public class BibtexFilter {
     
     abstract public boolean include(BibtexEntry entry);
     
+    /**
+     * Returns whether the entry at the given cursor is included. Filters that
+     * only need the columns of the store (e.g., the year) may override this
+     * method, such that a scan over all entries does not read the entries.
+     */
+    public boolean include(EntryStore.Cursor entry) {
+        return include(entry.getEntry());
+    }
+    
 }
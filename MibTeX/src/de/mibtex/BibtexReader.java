@@ -0,0 +1,453 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.jbibtex.ParseException;
+
+/**
+ * Reads the entries of a BibTeX file directly from a character buffer. In
+ * contrast to jbibtex, no database holding all objects is built: field values
+ * are located as slices of the buffer, converted to their user strings (i.e.,
+ * with strings resolved and concatenations applied), and each entry is handed
+ * to a consumer as soon as it is complete.
+ *
+ * The reader follows the semantics of jbibtex for well-formed files: the last
+ * definition of a field and the first definition of an entry key or string win,
+ * keys and string names are case-insensitive, strings are resolved where they
+ * are used with the strings defined before, the month strings jan to dec are
+ * predefined, and spaces and tabs at the beginning of lines within values are
+ * removed. Text outside of objects is skipped. Entries with a cross reference to
+ * an entry that has not been read yet are held back until the referenced entry
+ * is read, such that entries are always passed on in the order of the file.
+ */
+public class BibtexReader {
+
+	private static final String[] MONTHS = { "January", "February", "March", "April", "May", "June", "July",
+			"August", "September", "October", "November", "December" };
+
+	private static final String CROSSREF = "crossref";
+
+	/**
+	 * A slice of the buffer that is either a literal value or a reference to a
+	 * string.
+	 */
+	private static class Part {
+		final int start;
+		final int end;
+		final boolean reference;
+
+		Part(int start, int end, boolean reference) {
+			this.start = start;
+			this.end = end;
+			this.reference = reference;
+		}
+	}
+
+	/** An entry whose cross reference is not resolved yet. */
+	private static class PendingEntry {
+		final String type;
+		final String key;
+		final Map<String, String> attributes;
+		boolean resolved = false;
+
+		PendingEntry(String type, String key, Map<String, String> attributes) {
+			this.type = type;
+			this.key = key;
+			this.attributes = attributes;
+		}
+	}
+
+	private final CharBuffer buffer;
+
+	private final int limit;
+
+	private int position;
+
+	/** Values of the strings defined so far with lower-case names as keys. */
+	private final Map<String, String> strings = new HashMap<>();
+
+	/** Attributes of all entries passed on with lower-case keys as keys. */
+	private final Map<String, Map<String, String>> readEntries = new HashMap<>();
+
+	private final Map<String, PendingEntry> pendingEntries = new LinkedHashMap<>();
+
+	/** Keys referenced by pending entries that have not been read yet. */
+	private final Set<String> missingKeys = new HashSet<>();
+
+	private Consumer<BibtexEntry> consumer;
+
+	public BibtexReader(CharBuffer buffer) {
+		this.buffer = buffer;
+		this.limit = buffer.limit();
+		for (String month : MONTHS) {
+			strings.put(month.substring(0, 3).toLowerCase(), month);
+		}
+	}
+
+	/**
+	 * Reads all entries and passes them to the given consumer in the order of the
+	 * file.
+	 */
+	public void read(Consumer<BibtexEntry> consumer) throws ParseException {
+		this.consumer = consumer;
+		position = 0;
+		while (skipToObject()) {
+			position++;
+			String type = readName();
+			skipWhitespace();
+			if (position >= limit || (buffer.get(position) != '{' && buffer.get(position) != '(')) {
+				// not an object, e.g., an e-mail address in a comment
+				continue;
+			}
+			char close = buffer.get(position) == '{' ? '}' : ')';
+			if ("comment".equalsIgnoreCase(type) || "preamble".equalsIgnoreCase(type)) {
+				skipGroup();
+			} else if ("string".equalsIgnoreCase(type)) {
+				position++;
+				readString(close);
+			} else {
+				position++;
+				readEntry(type, close);
+			}
+		}
+		for (PendingEntry pendingEntry : pendingEntries.values()) {
+			pass(pendingEntry);
+		}
+		pendingEntries.clear();
+	}
+
+	private void readString(char close) throws ParseException {
+		skipWhitespace();
+		String name = readName();
+		if (name.isEmpty()) {
+			throw error("Expected string name");
+		}
+		skipWhitespace();
+		expect('=');
+		String value = resolve(readValue(close));
+		skipWhitespace();
+		expect(close);
+		strings.putIfAbsent(name.toLowerCase(), value);
+	}
+
+	private void readEntry(String type, char close) throws ParseException {
+		skipWhitespace();
+		int start = position;
+		while (position < limit && !isKeyDelimiter(buffer.get(position), close)) {
+			position++;
+		}
+		String key = slice(start, position);
+		skipWhitespace();
+		Map<String, String> attributes = new LinkedHashMap<>();
+		while (position < limit && buffer.get(position) == ',') {
+			position++;
+			skipWhitespace();
+			if (position < limit && buffer.get(position) == close) {
+				break;
+			}
+			String name = readName();
+			if (name.isEmpty()) {
+				throw error("Expected field name");
+			}
+			skipWhitespace();
+			expect('=');
+			attributes.put(name.toLowerCase(), resolve(readValue(close)));
+			skipWhitespace();
+		}
+		expect(close);
+		String lowerCaseKey = key.toLowerCase();
+		if (readEntries.containsKey(lowerCaseKey) || pendingEntries.containsKey(lowerCaseKey)) {
+			return;
+		}
+		String crossReference = attributes.get(CROSSREF);
+		String lowerCaseReference = crossReference == null ? null : crossReference.toLowerCase();
+		if (pendingEntries.isEmpty() && (crossReference == null || readEntries.containsKey(lowerCaseReference))) {
+			pass(new PendingEntry(type, key, attributes));
+			return;
+		}
+		pendingEntries.put(lowerCaseKey, new PendingEntry(type, key, attributes));
+		missingKeys.remove(lowerCaseKey);
+		if (crossReference != null && !readEntries.containsKey(lowerCaseReference)
+				&& !pendingEntries.containsKey(lowerCaseReference)) {
+			missingKeys.add(lowerCaseReference);
+		}
+		if (missingKeys.isEmpty()) {
+			for (PendingEntry pendingEntry : pendingEntries.values()) {
+				pass(pendingEntry);
+			}
+			pendingEntries.clear();
+		}
+	}
+
+	private void pass(PendingEntry pendingEntry) {
+		Map<String, String> attributes = inherit(pendingEntry, new HashSet<>());
+		readEntries.put(pendingEntry.key.toLowerCase(), attributes);
+		consumer.accept(new BibtexEntry(pendingEntry.type, pendingEntry.key, attributes));
+	}
+
+	/**
+	 * Adds the attributes of the cross-referenced entry (and of its cross
+	 * reference, and so on) that are not defined by the given entry itself.
+	 */
+	private Map<String, String> inherit(PendingEntry pendingEntry, Set<PendingEntry> visited) {
+		if (pendingEntry.resolved || !visited.add(pendingEntry)) {
+			return pendingEntry.attributes;
+		}
+		String crossReference = pendingEntry.attributes.get(CROSSREF);
+		if (crossReference != null) {
+			String lowerCaseReference = crossReference.toLowerCase();
+			Map<String, String> inherited = readEntries.get(lowerCaseReference);
+			if (inherited == null && pendingEntries.containsKey(lowerCaseReference)) {
+				inherited = inherit(pendingEntries.get(lowerCaseReference), visited);
+			}
+			if (inherited != null) {
+				for (Map.Entry<String, String> attribute : inherited.entrySet()) {
+					pendingEntry.attributes.putIfAbsent(attribute.getKey(), attribute.getValue());
+				}
+			}
+		}
+		pendingEntry.resolved = true;
+		return pendingEntry.attributes;
+	}
+
+	/**
+	 * Reads a value consisting of braced or quoted literals, numbers, and string
+	 * names concatenated with #.
+	 */
+	private List<Part> readValue(char close) throws ParseException {
+		List<Part> parts = new ArrayList<>(1);
+		while (true) {
+			skipWhitespace();
+			if (position >= limit) {
+				throw error("Unexpected end of file");
+			}
+			char c = buffer.get(position);
+			if (c == '{') {
+				int start = position + 1;
+				skipGroup();
+				parts.add(new Part(start, position - 1, false));
+			} else if (c == '"') {
+				int start = ++position;
+				skipQuoted();
+				parts.add(new Part(start, position - 1, false));
+			} else {
+				int start = position;
+				while (position < limit && !isValueDelimiter(buffer.get(position), close)) {
+					position++;
+				}
+				if (start == position) {
+					throw error("Expected value");
+				}
+				parts.add(new Part(start, position, !Character.isDigit(c)));
+			}
+			skipWhitespace();
+			if (position >= limit || buffer.get(position) != '#') {
+				return parts;
+			}
+			position++;
+		}
+	}
+
+	private String resolve(List<Part> parts) {
+		if (parts.size() == 1 && !parts.get(0).reference && !needsNormalization(parts.get(0))) {
+			return slice(parts.get(0).start, parts.get(0).end);
+		}
+		StringBuilder value = new StringBuilder();
+		for (Part part : parts) {
+			if (part.reference) {
+				String name = slice(part.start, part.end);
+				value.append(strings.getOrDefault(name.toLowerCase(), name));
+			} else {
+				appendNormalized(value, part);
+			}
+		}
+		return value.toString();
+	}
+
+	private boolean needsNormalization(Part part) {
+		for (int i = part.start; i < part.end; i++) {
+			if (buffer.get(i) == '\n') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Appends a literal without spaces or tabs at the beginning of lines.
+	 */
+	private void appendNormalized(StringBuilder value, Part part) {
+		boolean lineStart = false;
+		for (int i = part.start; i < part.end; i++) {
+			char c = buffer.get(i);
+			if (lineStart && (c == ' ' || c == '\t')) {
+				continue;
+			}
+			value.append(c);
+			lineStart = c == '\n';
+		}
+	}
+
+	/**
+	 * Skips text outside of objects including comment lines. Returns whether an
+	 * object (i.e., an @) has been found.
+	 */
+	private boolean skipToObject() {
+		while (position < limit) {
+			char c = buffer.get(position);
+			if (c == '@') {
+				return true;
+			} else if (c == '%') {
+				skipLine();
+			} else {
+				position++;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Skips a group starting at the current position, which is delimited by
+	 * braces or parentheses. Braces preceded by a backslash are not counted.
+	 */
+	private void skipGroup() throws ParseException {
+		int start = position;
+		boolean parentheses = buffer.get(position) == '(';
+		int depth = parentheses ? 0 : 1;
+		for (position++; position < limit; position++) {
+			char c = buffer.get(position);
+			if (isEscaped()) {
+				continue;
+			} else if (c == '{') {
+				depth++;
+			} else if (c == '}') {
+				if (--depth == 0 && !parentheses) {
+					position++;
+					return;
+				}
+			} else if (c == ')' && parentheses && depth == 0) {
+				position++;
+				return;
+			}
+		}
+		position = start;
+		throw error("Unbalanced braces");
+	}
+
+	private void skipQuoted() throws ParseException {
+		int start = position - 1;
+		int depth = 0;
+		for (; position < limit; position++) {
+			char c = buffer.get(position);
+			if (isEscaped()) {
+				continue;
+			} else if (c == '{') {
+				depth++;
+			} else if (c == '}') {
+				if (--depth < 0) {
+					throw error("Unbalanced braces");
+				}
+			} else if (c == '"' && depth == 0) {
+				position++;
+				return;
+			}
+		}
+		position = start;
+		throw error("Unterminated quote");
+	}
+
+	private boolean isEscaped() {
+		return isEscaped(buffer, position);
+	}
+
+	/**
+	 * Returns whether the character at the given index follows a backslash.
+	 * Escaped braces and quotes (e.g., \} in a title) neither open nor close
+	 * groups. Code splitting a file into objects must follow the same rule.
+	 */
+	public static boolean isEscaped(CharSequence text, int index) {
+		return index > 0 && text.charAt(index - 1) == '\\';
+	}
+
+	private void skipWhitespace() {
+		while (position < limit) {
+			char c = buffer.get(position);
+			if (c == '%') {
+				skipLine();
+			} else if (Character.isWhitespace(c)) {
+				position++;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void skipLine() {
+		while (position < limit && buffer.get(position) != '\n') {
+			position++;
+		}
+	}
+
+	private String readName() {
+		int start = position;
+		while (position < limit && !isNameDelimiter(buffer.get(position))) {
+			position++;
+		}
+		return slice(start, position);
+	}
+
+	private static boolean isNameDelimiter(char c) {
+		return Character.isWhitespace(c) || c == '=' || c == ',' || c == '#' || c == '%' || c == '"' || c == '{'
+				|| c == '}' || c == '(' || c == ')';
+	}
+
+	private static boolean isKeyDelimiter(char c, char close) {
+		return Character.isWhitespace(c) || c == ',' || c == close;
+	}
+
+	private static boolean isValueDelimiter(char c, char close) {
+		return Character.isWhitespace(c) || c == ',' || c == '#' || c == '%' || c == close;
+	}
+
+	private void expect(char c) throws ParseException {
+		if (position >= limit) {
+			throw error("Expected '" + c + "' but reached end of file");
+		}
+		if (buffer.get(position) != c) {
+			throw error("Expected '" + c + "' but found '" + buffer.get(position) + "'");
+		}
+		position++;
+	}
+
+	private String slice(int start, int end) {
+		return buffer.subSequence(start, end).toString();
+	}
+
+	private ParseException error(String message) {
+		int line = 1;
+		int column = 1;
+		for (int i = 0; i < position && i < limit; i++) {
+			if (buffer.get(i) == '\n') {
+				line++;
+				column = 1;
+			} else {
+				column++;
+			}
+		}
+		return new ParseException(message + " at line " + line + ", column " + column + ".");
+	}
+}
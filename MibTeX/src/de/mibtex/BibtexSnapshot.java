@@ -0,0 +1,226 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary snapshot of the entries extracted from a BibTeX file, stored in the
+ * folder next to that file that holds all data kept between runs (see
+ * {@link FileUtils#getCacheDir()}). The snapshot is stamped with a hash of the
+ * file's content and the configured tags, such that it can be loaded instead of
+ * parsing the file again as long as neither of them changed.
+ */
+public class BibtexSnapshot {
+
+	private static final String MAGIC = "MibTeX snapshot";
+
+	private static final int VERSION = 2;
+
+	private final File file;
+
+	/** The file in which earlier versions stored the snapshot. */
+	private final File legacyFile;
+
+	private final String stamp;
+
+	/**
+	 * Strings already read or written. Repeated strings (e.g., authors, venues,
+	 * and field names) are stored only once and referenced by their index.
+	 */
+	private final List<String> readStrings = new ArrayList<>();
+
+	private final Map<String, Integer> writtenStrings = new HashMap<>();
+
+	public BibtexSnapshot(File bibtexFile, byte[] content) {
+		this.file = new File(FileUtils.getCacheDir(), bibtexFile.getName() + ".snapshot");
+		this.legacyFile = new File(bibtexFile.getPath() + ".mibtex");
+		this.stamp = computeStamp(content);
+	}
+
+	private static String computeStamp(byte[] content) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(content);
+			digest.update(String.join(",", BibtexViewer.TAGS).getBytes(StandardCharsets.UTF_8));
+			return String.format("%064x", new BigInteger(1, digest.digest()));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the entries stored in this snapshot or null if there is no
+	 * snapshot matching the current content of the BibTeX file.
+	 */
+	public List<BibtexEntry> read() {
+		if (!file.exists()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (!MAGIC.equals(in.readUTF()) || in.readInt() != VERSION || !stamp.equals(in.readUTF())) {
+				return null;
+			}
+			readStrings.clear();
+			int size = in.readInt();
+			List<BibtexEntry> entries = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				entries.add(readEntry(in));
+			}
+			return entries;
+		} catch (IOException | RuntimeException e) {
+			System.out.println("Snapshot " + file + " cannot be read");
+			return null;
+		}
+	}
+
+	public void write(List<BibtexEntry> entries) {
+		file.getParentFile().mkdirs();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeUTF(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(stamp);
+			writtenStrings.clear();
+			out.writeInt(entries.size());
+			for (BibtexEntry entry : entries) {
+				writeEntry(out, entry);
+			}
+		} catch (IOException e) {
+			System.out.println("IOException for " + file);
+			file.delete();
+			return;
+		}
+		legacyFile.delete();
+	}
+
+	private BibtexEntry readEntry(DataInputStream in) throws IOException {
+		BibtexEntry entry = new BibtexEntry();
+		entry.type = readString(in);
+		entry.key = readString(in);
+		entry.author = readString(in);
+		int authors = in.readInt();
+		List<PersonName> names = new ArrayList<>(authors);
+		for (int i = 0; i < authors; i++) {
+			names.add(new PersonName(readString(in), readString(in), readString(in), readString(in)));
+		}
+		entry.setAuthors(names);
+		entry.authorsAreEditors = in.readBoolean();
+		entry.title = readString(in);
+		entry.venue = InternPool.VENUES.intern(readString(in));
+		entry.doi = readString(in);
+		entry.url = readString(in);
+		entry.year = in.readInt();
+		entry.tags = readList(in);
+		int tagLists = in.readInt();
+		Map<String, List<String>> tagsByField = new LinkedHashMap<>();
+		for (int i = 0; i < tagLists; i++) {
+			tagsByField.put(readString(in), readList(in));
+		}
+		entry.setTagList(tagsByField);
+		entry.attributes = readMap(in);
+		return entry;
+	}
+
+	private void writeEntry(DataOutputStream out, BibtexEntry entry) throws IOException {
+		writeString(out, entry.type);
+		writeString(out, entry.key);
+		writeString(out, entry.author);
+		out.writeInt(entry.authorNames.size());
+		for (PersonName name : entry.authorNames) {
+			writeString(out, name.first);
+			writeString(out, name.von);
+			writeString(out, name.last);
+			writeString(out, name.jr);
+		}
+		out.writeBoolean(entry.authorsAreEditors);
+		writeString(out, entry.title);
+		writeString(out, entry.venue);
+		writeString(out, entry.doi);
+		writeString(out, entry.url);
+		out.writeInt(entry.year);
+		writeList(out, entry.tags);
+		out.writeInt(entry.tagList.size());
+		for (Map.Entry<String, List<String>> tagList : entry.tagList.entrySet()) {
+			writeString(out, tagList.getKey());
+			writeList(out, tagList.getValue());
+		}
+		writeMap(out, entry.attributes);
+	}
+
+	private String readString(DataInputStream in) throws IOException {
+		int index = in.readInt();
+		if (index >= 0) {
+			return readStrings.get(index);
+		}
+		byte[] bytes = new byte[-index - 1];
+		in.readFully(bytes);
+		String s = new String(bytes, StandardCharsets.UTF_8);
+		readStrings.add(s);
+		return s;
+	}
+
+	private void writeString(DataOutputStream out, String s) throws IOException {
+		Integer index = writtenStrings.get(s);
+		if (index != null) {
+			out.writeInt(index);
+		} else {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(-bytes.length - 1);
+			out.write(bytes);
+			writtenStrings.put(s, writtenStrings.size());
+		}
+	}
+
+	private List<String> readList(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		List<String> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(readString(in));
+		}
+		return list;
+	}
+
+	private void writeList(DataOutputStream out, List<String> list) throws IOException {
+		out.writeInt(list.size());
+		for (String s : list) {
+			writeString(out, s);
+		}
+	}
+
+	private Map<String, String> readMap(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		Map<String, String> map = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			map.put(readString(in), readString(in));
+		}
+		return map;
+	}
+
+	private void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+		out.writeInt(map.size());
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+	}
+}
@@ -42,6 +42,18 @@ public class BibtexViewer {
 
     public static List<String> TAGS = new ArrayList<String>();
 
+    public static boolean USE_SNAPSHOT = true;
+
+    public static boolean PARALLEL_PARSING = false;
+
+    public static boolean PARALLEL_EXPORT = true;
+
+    public static boolean CLIENT_SIDE_DATA = false;
+
+    public static int SHARD_SIZE = 0;
+
+    public static boolean GZIP_OUTPUT = false;
+
     private static boolean cleanOutputDir;
 
     private static boolean updateCitations;
@@ -50,6 +62,16 @@ public class BibtexViewer {
 
     public static String CITATION_DIR;
 
+    private final List<Export> exporters = new ArrayList<>();
+
+    /**
+     * The exporter of the format "Citations" or null. It changes the citations
+     * of the shared entries and thus runs before all other exporters.
+     */
+    private Export citationsExporter;
+
+    private final List<String> formats;
+
     /**
      * Example arguments
      * <p>
@@ -63,12 +85,20 @@ public class BibtexViewer {
      *             - relative path of PDF files to the HTML folder (for linking files in HTML)
      *             - relative path of PDF files to main directory
      *             - list of the tag containing your keywords (format: "tag1,tag2,tag3")
-     *             - format for export (CSV/JSON/HTML)
+     *             - format for export (CSV/JSON/HTML or a comma-separated list such as "HTML,JSON,CSV")
      *             - boolean for output cleaning (default: false)
      *             - boolean for update citations file (default:true)
      *             - path to citations file (default: Bibtex file path)
+     *             <p>
+     *             With "--watch" as first argument, the exporters keep running
+     *             and update their output whenever the BibTeX file, the
+     *             citations, the abbreviations, or the PDF files change.
      */
     public static void main(String[] args) {
+        boolean watch = args.length > 0 && "--watch".equals(args[0]);
+        if (watch) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
         if (args.length <= 1) {
             String configurationFile;
             if (args.length == 0)
@@ -112,6 +142,18 @@ public class BibtexViewer {
                         CITATION_DIR = citationDir;
                     }
                     format = ini.get("options", "out-format");
+                    Boolean snapshot = ini.get("options", "snapshot", Boolean.class);
+                    USE_SNAPSHOT = snapshot == null || snapshot;
+                    Boolean parallelParsing = ini.get("options", "parallel-parsing", Boolean.class);
+                    PARALLEL_PARSING = parallelParsing != null && parallelParsing;
+                    Boolean parallelExport = ini.get("options", "parallel-export", Boolean.class);
+                    PARALLEL_EXPORT = parallelExport == null || parallelExport;
+                    Boolean clientSideData = ini.get("options", "client-side-data", Boolean.class);
+                    CLIENT_SIDE_DATA = clientSideData != null && clientSideData;
+                    Integer shardSize = ini.get("options", "shard-size", Integer.class);
+                    SHARD_SIZE = shardSize == null ? 0 : shardSize;
+                    Boolean gzipOutput = ini.get("options", "gzip", Boolean.class);
+                    GZIP_OUTPUT = gzipOutput != null && gzipOutput;
                 } else {
                     System.out.println("Ini file reader is null!");
                     System.exit(0);
@@ -158,58 +200,133 @@ public class BibtexViewer {
             }
         }
         try {
-            if (updateCitations && !"Citations".equals(format)) {
+            if (updateCitations && !getFormats(format).contains("CITATIONS")) {
                 new BibtexViewer("Citations");
             }
-            if (format != null)
-                new BibtexViewer(format);
+            if (format != null) {
+                BibtexViewer viewer = new BibtexViewer(format);
+                if (watch) {
+                    viewer.watch();
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Creates an exporter for each of the given comma-separated formats (e.g.,
+     * "HTML,JSON,CSV,Typo3"). The BibTeX file is parsed only once and all
+     * exporters are run in parallel on the shared model, after the citations
+     * have been updated if "Citations" is one of the formats.
+     */
     public BibtexViewer(String format) throws Exception {
-        Export exporter = null;
-        switch (format.toUpperCase()) {
+        formats = getFormats(format);
+        for (String singleFormat : formats) {
+            Export exporter = createExporter(singleFormat);
+            exporter.setOutputOwner(singleFormat);
+            if (singleFormat.equals("CITATIONS")) {
+                citationsExporter = exporter;
+            } else {
+                exporters.add(exporter);
+            }
+        }
+        // exporter.printMissingPDFs();
+        // exporter.renameFiles();
+        writeDocuments(citationsExporter, exporters);
+        // outputs that are still up to date are kept instead of being cleaned up front
+        if (cleanOutputDir) {
+            Export.cleanOutputFolder(formats);
+        } else {
+            Export.removeOrphanedOutputs(formats);
+        }
+        Export.writeOutputManifest();
+    }
+
+    /**
+     * Keeps the parsed BibTeX file in memory and runs the exporters affected by
+     * a change of their inputs again, until the process is terminated.
+     */
+    public void watch() throws IOException {
+        new LibraryWatcher("literature.bib").run(changedInputs -> {
+            if (!Export.reload(changedInputs)) {
+                System.out.println("Keeping the previous output until the BibTeX-File is fixed");
+                return;
+            }
+            Export affectedCitationsExporter = null;
+            if (citationsExporter != null && !Collections.disjoint(citationsExporter.getInputs(), changedInputs)) {
+                affectedCitationsExporter = citationsExporter;
+            }
+            List<Export> affectedExporters = new ArrayList<>();
+            for (Export exporter : exporters) {
+                if (!Collections.disjoint(exporter.getInputs(), changedInputs)) {
+                    affectedExporters.add(exporter);
+                }
+            }
+            try {
+                writeDocuments(affectedCitationsExporter, affectedExporters);
+                if (affectedExporters.size() == exporters.size()
+                        && affectedCitationsExporter == citationsExporter) {
+                    Export.removeOrphanedOutputs(formats);
+                }
+                Export.writeOutputManifest();
+            } catch (RuntimeException e) {
+                // keep watching, the next change may fix the problem
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Runs the given citations exporter, if any, on its own and then all other
+     * exporters, such that these never read citations while they are updated.
+     */
+    private static void writeDocuments(Export citationsExporter, List<Export> exporters) {
+        if (citationsExporter != null) {
+            citationsExporter.writeDocument();
+        }
+        if (exporters.size() == 1) {
+            exporters.get(0).writeDocument();
+        } else {
+            exporters.parallelStream().forEach(Export::writeDocument);
+        }
+    }
+
+    private static List<String> getFormats(String format) {
+        List<String> formats = new ArrayList<>();
+        for (String singleFormat : format.split(",")) {
+            if (!singleFormat.isBlank()) {
+                formats.add(singleFormat.trim().toUpperCase());
+            }
+        }
+        return formats;
+    }
+
+    private static Export createExporter(String format) throws Exception {
+        switch (format) {
             case "CSV":
-                exporter = new ExportCSV(BibtexViewer.BIBTEX_DIR, "literature.bib");
-                break;
+                return new ExportCSV(BibtexViewer.BIBTEX_DIR, "literature.bib");
             case "JSON":
-                exporter = new ExportJSON(BibtexViewer.BIBTEX_DIR, "literature.bib");
-                break;
+                return new ExportJSON(BibtexViewer.BIBTEX_DIR, "literature.bib");
             case "CITATIONS":
-                exporter = new ExportCitations(BibtexViewer.BIBTEX_DIR, "literature.bib");
-                break;
+                return new ExportCitations(BibtexViewer.BIBTEX_DIR, "literature.bib");
             case "CONFLICTS":
-                exporter = new ExportConflicts(BibtexViewer.BIBTEX_DIR, "literature.bib");
-                break;
+                return new ExportConflicts(BibtexViewer.BIBTEX_DIR, "literature.bib");
             case "CLASSIFICATION":
-                exporter = new ExportClassification(BibtexViewer.BIBTEX_DIR, "literature.bib");
-                break;
+                return new ExportClassification(BibtexViewer.BIBTEX_DIR, "literature.bib");
             case "SAMPLING":
-                exporter = new ExportSampling(BibtexViewer.BIBTEX_DIR, "literature.bib");
-                break;
+                return new ExportSampling(BibtexViewer.BIBTEX_DIR, "literature.bib");
             case "SAMPLING LATEX":
-                exporter = new ExportSamplingLatex(BibtexViewer.BIBTEX_DIR, "literature.bib");
-                break;
+                return new ExportSamplingLatex(BibtexViewer.BIBTEX_DIR, "literature.bib");
             case "HTML_NEW":
-                exporter = new ExportNewHTML(BibtexViewer.BIBTEX_DIR, "literature.bib");
-                break;
+                return new ExportNewHTML(BibtexViewer.BIBTEX_DIR, "literature.bib");
             case "FIND_PDFS":
-                exporter = new ExportFindPDFs(BibtexViewer.BIBTEX_DIR, "literature.bib");
-                break;
+                return new ExportFindPDFs(BibtexViewer.BIBTEX_DIR, "literature.bib");
             case "TYPO3":
-            	exporter = new ExportTypo3Bibtex(BibtexViewer.BIBTEX_DIR, "literature.bib");
-            	break;
+            	return new ExportTypo3Bibtex(BibtexViewer.BIBTEX_DIR, "literature.bib");
             case "HTML":
             default:
-                exporter = new ExportHTML(BibtexViewer.BIBTEX_DIR, "literature.bib");
-        }
-        if (cleanOutputDir) {
-            Export.cleanOutputFolder();
+                return new ExportHTML(BibtexViewer.BIBTEX_DIR, "literature.bib");
         }
-        // exporter.printMissingPDFs();
-        // exporter.renameFiles();
-        exporter.writeDocument();
     }
 }
@@ -0,0 +1,268 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of the files in the PDF and comments directories, such that the
+ * existence of the PDF and comments of an entry is looked up in memory instead
+ * of asking the file system for each entry. The directories are organized in
+ * decade and year folders (see {@link BibtexEntry#getPDFPath()}), which are
+ * listed in parallel. The index is only built when the first file is looked up,
+ * such that exporters not showing documents never list the directories. The
+ * index is stored next to the BibTeX file and, in the next run, only the
+ * folders whose modification time changed are listed again.
+ */
+public class DocumentIndex {
+
+	private static final int VERSION = 1;
+
+	/** The depth of the year folders below the root (e.g., 2010s/2015). */
+	private static final int DEPTH = 2;
+
+	/**
+	 * File systems may store modification times in seconds. Folders modified
+	 * within this time before they were listed are listed again in the next run,
+	 * as later changes in the same second would go unnoticed.
+	 */
+	private static final long MODIFICATION_TOLERANCE_MILLIS = 2000;
+
+	/** The indexes of the PDF and comments directories or null if outdated. */
+	private static volatile List<DocumentIndex> indexes;
+
+	private final Path root;
+
+	private final File file;
+
+	private final Map<String, Folder> folders = new ConcurrentHashMap<>();
+
+	/** The folders by their relative path in lower case. */
+	private final Map<String, Folder> foldedFolders = new HashMap<>();
+
+	private volatile boolean changed;
+
+	private static class Folder {
+		final long lastModified;
+		final Set<String> files;
+		final Set<String> foldedFiles = new HashSet<>();
+		final List<String> subfolders;
+
+		Folder(long lastModified, Set<String> files, List<String> subfolders) {
+			this.lastModified = lastModified;
+			this.files = files;
+			this.subfolders = subfolders;
+			for (String name : files) {
+				foldedFiles.add(fold(name));
+			}
+		}
+	}
+
+	private DocumentIndex(Path root, String name) {
+		this.root = root;
+		this.file = new File(FileUtils.getCacheDir(), name + ".index");
+	}
+
+	/**
+	 * Marks the indexes of the PDF and comments directories as outdated, such that
+	 * they are updated to the current content of the directories when the next
+	 * file is looked up.
+	 */
+	public static void invalidate() {
+		indexes = null;
+	}
+
+	private static List<DocumentIndex> getIndexes() {
+		List<DocumentIndex> currentIndexes = indexes;
+		if (currentIndexes == null) {
+			synchronized (DocumentIndex.class) {
+				currentIndexes = indexes;
+				if (currentIndexes == null) {
+					currentIndexes = update();
+					indexes = currentIndexes;
+				}
+			}
+		}
+		return currentIndexes;
+	}
+
+	private static List<DocumentIndex> update() {
+		List<DocumentIndex> updatedIndexes = new ArrayList<>();
+		Path pdfRoot = toPath(BibtexViewer.PDF_DIR);
+		Path commentsRoot = toPath(BibtexViewer.COMMENTS_DIR);
+		updatedIndexes.add(new DocumentIndex(pdfRoot, "pdfs"));
+		if (!commentsRoot.equals(pdfRoot)) {
+			updatedIndexes.add(new DocumentIndex(commentsRoot, "comments"));
+		}
+		updatedIndexes.parallelStream().forEach(DocumentIndex::refresh);
+		return updatedIndexes;
+	}
+
+	/**
+	 * Returns whether the given file exists. Files in the indexed directories are
+	 * looked up in the index, all other files in the file system. Names differing
+	 * only in case from an indexed file are also checked in the file system, as
+	 * they refer to the same file on some file systems (e.g., on Windows).
+	 */
+	public static boolean exists(File file) {
+		Path path = toPath(file.getPath());
+		for (DocumentIndex index : getIndexes()) {
+			if (path.startsWith(index.root)) {
+				Path relativeFolder = index.root.relativize(path).getParent();
+				if (relativeFolder == null || relativeFolder.getNameCount() <= DEPTH) {
+					return index.contains(relativeFolder == null ? "" : relativeFolder.toString(),
+							path.getFileName().toString(), file);
+				}
+			}
+		}
+		return file.exists();
+	}
+
+	private boolean contains(String relativeFolder, String name, File file) {
+		Folder folder = folders.get(relativeFolder);
+		if (folder != null && folder.files.contains(name)) {
+			return true;
+		}
+		if (folder == null) {
+			folder = foldedFolders.get(fold(relativeFolder));
+		}
+		return folder != null && folder.foldedFiles.contains(fold(name)) && file.exists();
+	}
+
+	private static String fold(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	private static Path toPath(String path) {
+		return Paths.get(path).toAbsolutePath().normalize();
+	}
+
+	private void refresh() {
+		Map<String, Folder> oldFolders = read();
+		refresh("", 0, oldFolders);
+		for (Map.Entry<String, Folder> folder : folders.entrySet()) {
+			foldedFolders.putIfAbsent(fold(folder.getKey()), folder.getValue());
+		}
+		if (changed || !folders.keySet().equals(oldFolders.keySet())) {
+			write();
+		}
+	}
+
+	private void refresh(String relativePath, int depth, Map<String, Folder> oldFolders) {
+		File dir = root.resolve(relativePath).toFile();
+		long lastModified = dir.lastModified();
+		if (lastModified == 0) {
+			// the folder does not exist
+			return;
+		}
+		Folder folder = oldFolders.get(relativePath);
+		if (folder == null || folder.lastModified != lastModified) {
+			folder = list(dir, lastModified);
+			changed = true;
+		}
+		folders.put(relativePath, folder);
+		if (depth < DEPTH) {
+			folder.subfolders.parallelStream().forEach(subfolder -> refresh(
+					relativePath.isEmpty() ? subfolder : relativePath + File.separator + subfolder, depth + 1,
+					oldFolders));
+		}
+	}
+
+	private static Folder list(File dir, long lastModified) {
+		Set<String> files = new HashSet<>();
+		List<String> subfolders = new ArrayList<>();
+		File[] children = dir.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				if (child.isDirectory()) {
+					subfolders.add(child.getName());
+				} else {
+					files.add(child.getName());
+				}
+			}
+		}
+		if (System.currentTimeMillis() - lastModified < MODIFICATION_TOLERANCE_MILLIS) {
+			lastModified = -1;
+		}
+		return new Folder(lastModified, files, subfolders);
+	}
+
+	private Map<String, Folder> read() {
+		Map<String, Folder> oldFolders = new LinkedHashMap<>();
+		if (!file.exists()) {
+			return oldFolders;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != VERSION || !root.toString().equals(in.readUTF())) {
+				return oldFolders;
+			}
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				String relativePath = in.readUTF();
+				long lastModified = in.readLong();
+				int fileCount = in.readInt();
+				Set<String> files = new HashSet<>(fileCount);
+				for (int j = 0; j < fileCount; j++) {
+					files.add(in.readUTF());
+				}
+				int subfolderCount = in.readInt();
+				List<String> subfolders = new ArrayList<>(subfolderCount);
+				for (int j = 0; j < subfolderCount; j++) {
+					subfolders.add(in.readUTF());
+				}
+				oldFolders.put(relativePath, new Folder(lastModified, files, subfolders));
+			}
+		} catch (IOException | RuntimeException e) {
+			System.out.println("IOException for " + file);
+			oldFolders.clear();
+		}
+		return oldFolders;
+	}
+
+	private void write() {
+		file.getParentFile().mkdirs();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(VERSION);
+			out.writeUTF(root.toString());
+			out.writeInt(folders.size());
+			for (Map.Entry<String, Folder> entry : folders.entrySet()) {
+				Folder folder = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(folder.lastModified);
+				out.writeInt(folder.files.size());
+				for (String name : folder.files) {
+					out.writeUTF(name);
+				}
+				out.writeInt(folder.subfolders.size());
+				for (String name : folder.subfolders) {
+					out.writeUTF(name);
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("IOException for " + file);
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The fields of all entries that the filters of the HTML pages test, stored
+ * column by column in arrays with one element per entry (e.g., the years of all
+ * entries in one array), such that filters compare ids instead of reading the
+ * scattered entries. The authors and tags of the entries are stored in one
+ * array each, where the authors of entry i are at the indices from
+ * authorStarts[i] to authorStarts[i + 1]. The entries are read through a
+ * {@link Cursor}.
+ */
+public final class EntryStore {
+
+	private final BibtexEntry[] entries;
+
+	private final int[] years;
+
+	/**
+	 * The ids of the venues in lower case, as venues differing only in case are
+	 * shown on the same venue page.
+	 */
+	private final int[] venueIds;
+
+	private final Map<String, Integer> venueIdsByName = new HashMap<>();
+
+	private final int[] authorStarts;
+
+	/** The ids of the authors by their names as shown by the exports. */
+	private final int[] authorIds;
+
+	private final Map<String, Integer> authorIdsByName = new HashMap<>();
+
+	private final int[] tagStarts;
+
+	/** The ids of the tags in all tag fields in {@link InternPool#TAGS}. */
+	private final int[] tagIds;
+
+	/**
+	 * Stores the given entries in their order. The store does not change when
+	 * the entries are changed afterwards.
+	 */
+	public EntryStore(Collection<BibtexEntry> entries) {
+		this.entries = entries.toArray(new BibtexEntry[0]);
+		int size = this.entries.length;
+		years = new int[size];
+		venueIds = new int[size];
+		authorStarts = new int[size + 1];
+		tagStarts = new int[size + 1];
+		int authors = 0;
+		int tags = 0;
+		for (BibtexEntry entry : this.entries) {
+			authors += entry.authorIds.length;
+			for (int[] tagsOfField : entry.tagIds) {
+				tags += tagsOfField.length;
+			}
+		}
+		authorIds = new int[authors];
+		tagIds = new int[tags];
+		authors = 0;
+		tags = 0;
+		for (int i = 0; i < size; i++) {
+			BibtexEntry entry = this.entries[i];
+			years[i] = entry.year;
+			venueIds[i] = venueIdsByName.computeIfAbsent(entry.venue.toLowerCase(), name -> venueIdsByName.size());
+			authorStarts[i] = authors;
+			for (String author : entry.authorList) {
+				authorIds[authors++] = authorIdsByName.computeIfAbsent(author, name -> authorIdsByName.size());
+			}
+			tagStarts[i] = tags;
+			for (int[] tagsOfField : entry.tagIds) {
+				System.arraycopy(tagsOfField, 0, tagIds, tags, tagsOfField.length);
+				tags += tagsOfField.length;
+			}
+		}
+		authorStarts[size] = authors;
+		tagStarts[size] = tags;
+	}
+
+	public int size() {
+		return entries.length;
+	}
+
+	public BibtexEntry getEntry(int index) {
+		return entries[index];
+	}
+
+	/**
+	 * Returns the id of the author with the given name or -1 if no entry has
+	 * this author.
+	 */
+	public int getAuthorId(String name) {
+		return authorIdsByName.getOrDefault(name, -1);
+	}
+
+	/**
+	 * Returns the id of the given tag or -1 if no entry has ever had this tag.
+	 */
+	public int getTagId(String tag) {
+		return InternPool.TAGS.find(tag);
+	}
+
+	/**
+	 * Returns the id of the given venue ignoring case or -1 if no entry has this
+	 * venue.
+	 */
+	public int getVenueId(String venue) {
+		return venueIdsByName.getOrDefault(venue.toLowerCase(), -1);
+	}
+
+	/**
+	 * Returns a cursor that is to be moved to an entry.
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Reads the fields of one entry at a time. Moving the cursor to another
+	 * entry does not create any objects, such that testing many entries only
+	 * reads the arrays of the store.
+	 */
+	public final class Cursor {
+
+		private int index = -1;
+
+		private Cursor() {
+		}
+
+		public void moveTo(int index) {
+			if (index < 0 || index >= entries.length) {
+				throw new IndexOutOfBoundsException(index);
+			}
+			this.index = index;
+		}
+
+		public BibtexEntry getEntry() {
+			return entries[index];
+		}
+
+		public int getYear() {
+			return years[index];
+		}
+
+		public int getVenueId() {
+			return venueIds[index];
+		}
+
+		public boolean hasAuthor(int id) {
+			return contains(authorIds, authorStarts[index], authorStarts[index + 1], id);
+		}
+
+		public boolean hasTag(int id) {
+			return contains(tagIds, tagStarts[index], tagStarts[index + 1], id);
+		}
+	}
+
+	private static boolean contains(int[] ids, int start, int end, int id) {
+		for (int i = start; i < end; i++) {
+			if (ids[i] == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
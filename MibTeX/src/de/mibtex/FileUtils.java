@@ -1,6 +1,8 @@
 package de.mibtex;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class FileUtils {
 	public static File concat(File dir, File path) {
@@ -17,4 +19,26 @@ public class FileUtils {
 	public static File concat(String dir, String path) {
 		return concat(new File(dir), path);
 	}
+
+	/**
+	 * Returns the folder in which data is kept between runs (e.g., the index of
+	 * the PDF files). It is next to the BibTeX file instead of in the output
+	 * folder, such that it is not published with the outputs.
+	 */
+	public static File getCacheDir() {
+		return concat(BibtexViewer.BIBTEX_DIR, ".mibtex");
+	}
+
+	/**
+	 * Returns the folder in which data about the outputs in the output folder is
+	 * kept between runs (e.g., the entries on each page). Each output folder has
+	 * its own folder in {@link #getCacheDir()}, named after it and a hash of its
+	 * path.
+	 */
+	public static File getOutputCacheDir() {
+		Path outputDir = Paths.get(BibtexViewer.OUTPUT_DIR).toAbsolutePath().normalize();
+		Path name = outputDir.getFileName();
+		return new File(getCacheDir(),
+				(name == null ? "" : name + "-") + Integer.toHexString(outputDir.toString().hashCode()));
+	}
 }
@@ -0,0 +1,128 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Assigns each distinct value (e.g., an author) a small id, such that entries
+ * can refer to values by their id instead of keeping their own copies of them.
+ * Ids are assigned in the order in which values are interned, starting at 0,
+ * and stay valid as long as the program runs. Values can be interned by
+ * several threads at once (e.g., while a file is parsed in parallel).
+ */
+public final class InternPool<T> {
+
+	public static final InternPool<PersonName> AUTHORS = new InternPool<>();
+
+	public static final InternPool<String> VENUES = new InternPool<>();
+
+	public static final InternPool<String> TAGS = new InternPool<>();
+
+	/** The names of the fields with tags (e.g., tt-tags). */
+	public static final InternPool<String> TAG_FIELDS = new InternPool<>();
+
+	private final ConcurrentHashMap<T, Integer> ids = new ConcurrentHashMap<>();
+
+	/** The values by their id. A new array is published after each write. */
+	private volatile Object[] values = new Object[64];
+
+	private volatile int size;
+
+	/**
+	 * Returns the id of the given value and assigns a new id to values that have
+	 * not been interned before.
+	 */
+	public int id(T value) {
+		Integer id = ids.get(value);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(value);
+			if (id != null) {
+				return id;
+			}
+			Object[] values = this.values;
+			if (size == values.length) {
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			values[size] = value;
+			this.values = values;
+			ids.put(value, size);
+			return size++;
+		}
+	}
+
+	/**
+	 * Returns the id of the given value or -1 if it has not been interned.
+	 */
+	public int find(T value) {
+		Integer id = ids.get(value);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the value equal to the given one that has been interned first, such
+	 * that equal values share one instance.
+	 */
+	public T intern(T value) {
+		return get(id(value));
+	}
+
+	@SuppressWarnings("unchecked")
+	public T get(int id) {
+		return (T) values[id];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns an unmodifiable list of the values with the given ids. The list
+	 * refers to the given array, which must not be changed afterwards.
+	 */
+	public List<T> asList(int[] ids) {
+		return asList(ids, Function.identity());
+	}
+
+	/**
+	 * Returns an unmodifiable list of the given function applied to the values
+	 * with the given ids.
+	 */
+	public <R> List<R> asList(int[] ids, Function<? super T, ? extends R> function) {
+		return new View<>(this, ids, function);
+	}
+
+	private static class View<T, R> extends AbstractList<R> implements RandomAccess {
+		private final InternPool<T> pool;
+		private final int[] ids;
+		private final Function<? super T, ? extends R> function;
+
+		View(InternPool<T> pool, int[] ids, Function<? super T, ? extends R> function) {
+			this.pool = pool;
+			this.ids = ids;
+			this.function = function;
+		}
+
+		@Override
+		public R get(int index) {
+			return function.apply(pool.get(ids[index]));
+		}
+
+		@Override
+		public int size() {
+			return ids.length;
+		}
+	}
+}
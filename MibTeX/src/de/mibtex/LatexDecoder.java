@@ -0,0 +1,224 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex;
+
+/**
+ * Decodes the LaTeX in authors, titles, and tags to the HTML shown by the
+ * exports (e.g., {@code M\"{u}ller} to {@code M&uuml;ller}) in a single pass
+ * over the text. Umlauts, {@code \ss}, and {@code \&} become HTML entities,
+ * other accents and commands are dropped, two or three hyphens become an en
+ * dash, braces are removed, and whitespace is collapsed to single spaces.
+ */
+final class LatexDecoder {
+
+	/** The accents that are dropped together with their command. */
+	private static final String DROPPED_ACCENTS = "cvuk^'`~";
+
+	/**
+	 * The commands that are decoded after umlauts and escaped characters, in the
+	 * order in which they have been decoded by a sequence of replacements.
+	 */
+	private static final String LATE_COMMANDS = "cvulik^'`,~\"";
+
+	private static final String UMLAUTS = "aouAOU";
+
+	private static final String[] UMLAUT_ENTITIES = { "&auml;", "&ouml;", "&uuml;", "&Auml;", "&Ouml;", "&Uuml;" };
+
+	private static final String EN_DASH = "&#8211;";
+
+	private final String s;
+
+	private final StringBuilder out;
+
+	/** The number of hyphens read since the last other character. */
+	private int hyphens;
+
+	/**
+	 * Whether the last command was a backslash followed by another one. The
+	 * first backslash remains in front of the text after the second one and
+	 * forms a command with it if only late commands have been dropped in between.
+	 */
+	private boolean backslash;
+
+	/** The last of the late commands dropped after the first backslash. */
+	private int backslashCommand;
+
+	private LatexDecoder(String s) {
+		this.s = s;
+		this.out = new StringBuilder(s.length() + 16);
+	}
+
+	static String decode(String s) {
+		if (!needsDecoding(s)) {
+			return s;
+		}
+		LatexDecoder decoder = new LatexDecoder(s);
+		decoder.decode();
+		return decoder.out.toString();
+	}
+
+	/**
+	 * Returns whether the text contains anything that is decoded, such that most
+	 * texts are returned without being copied.
+	 */
+	private static boolean needsDecoding(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '\\' || c == '{' || c == '}' || (c != ' ' && isWhitespace(c))
+					|| ((c == '-' || c == ' ') && i + 1 < s.length() && s.charAt(i + 1) == c)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void decode() {
+		int i = 0;
+		while (i < s.length()) {
+			char c = s.charAt(i);
+			if (c == '\\') {
+				i = decodeCommand(i);
+			} else if (backslash && LATE_COMMANDS.indexOf(c) > backslashCommand) {
+				// the first of two backslashes forms a command with this character
+				if (c == ',') {
+					append(' ');
+				} else if (c == 'l' || c == 'i') {
+					append(c);
+				} else {
+					backslash = false;
+				}
+				i++;
+			} else if (c == '-') {
+				appendHyphen();
+				i++;
+			} else if (c == '{' || c == '}') {
+				// braces are removed, but separate hyphens
+				appendHyphens();
+				backslash = false;
+				i++;
+			} else {
+				append(c);
+				i++;
+			}
+		}
+		appendHyphens();
+	}
+
+	/**
+	 * Decodes the command starting with the backslash at the given index and
+	 * returns the index after the command.
+	 */
+	private int decodeCommand(int i) {
+		if (i + 1 == s.length()) {
+			return i + 1;
+		}
+		char command = s.charAt(i + 1);
+		switch (command) {
+		case '\\':
+			backslash = true;
+			backslashCommand = -1;
+			return i + 1;
+		case '"':
+			int letter = i + 2;
+			if (letter < s.length() && s.charAt(letter) == '{') {
+				appendHyphens();
+				backslash = false;
+				letter++;
+			}
+			int umlaut = letter < s.length() ? UMLAUTS.indexOf(s.charAt(letter)) : -1;
+			if (umlaut < 0) {
+				dropLateCommand(command);
+				return letter;
+			}
+			appendEntity(UMLAUT_ENTITIES[umlaut]);
+			return letter + 1;
+		case 's':
+			if (i + 2 < s.length() && s.charAt(i + 2) == 's') {
+				appendEntity("&szlig;");
+				return i + 3;
+			}
+			return i + 1;
+		case '&':
+			if (s.startsWith("\\#536;", i + 2)) {
+				append('S');
+				return i + 8;
+			}
+			appendText("&amp;");
+			return i + 2;
+		case ',':
+			append(' ');
+			return i + 2;
+		default:
+			if (DROPPED_ACCENTS.indexOf(command) >= 0) {
+				dropLateCommand(command);
+				return i + 2;
+			}
+			// the backslash of other commands is dropped
+			return i + 1;
+		}
+	}
+
+	private void dropLateCommand(char command) {
+		backslashCommand = Math.max(backslashCommand, LATE_COMMANDS.indexOf(command));
+	}
+
+	private void appendHyphen() {
+		hyphens++;
+		backslash = false;
+	}
+
+	private void append(char c) {
+		appendHyphens();
+		backslash = false;
+		if (!isWhitespace(c)) {
+			out.append(c);
+		} else if (out.length() == 0 || out.charAt(out.length() - 1) != ' ') {
+			out.append(' ');
+		}
+	}
+
+	private void appendText(String text) {
+		appendHyphens();
+		backslash = false;
+		out.append(text);
+	}
+
+	/**
+	 * Appends an umlaut or sharp s. Directly after a double backslash, its
+	 * ampersand is escaped as well, as it has always been.
+	 */
+	private void appendEntity(String entity) {
+		appendHyphens();
+		if (backslash && backslashCommand < 0) {
+			out.append("&amp;").append(entity, 1, entity.length());
+		} else {
+			out.append(entity);
+		}
+		backslash = false;
+	}
+
+	/**
+	 * Appends the pending hyphens, with each three and a remaining two of them
+	 * replaced by an en dash.
+	 */
+	private void appendHyphens() {
+		if (hyphens == 0) {
+			return;
+		}
+		for (int i = 0; i < hyphens / 3 + (hyphens % 3 == 2 ? 1 : 0); i++) {
+			out.append(EN_DASH);
+		}
+		if (hyphens % 3 == 1) {
+			out.append('-');
+		}
+		hyphens = 0;
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+}
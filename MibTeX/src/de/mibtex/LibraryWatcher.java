@@ -0,0 +1,149 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import de.mibtex.export.Export.Input;
+
+/**
+ * Watches the inputs of the exporters for changes: the BibTeX file, the
+ * abbreviations, and the citations in their directories as well as the PDF and
+ * comment files in their directory trees. Changes are collected until no
+ * further change occurs for a short time (e.g., while a file is being saved or
+ * PDFs are being copied) and then passed on together.
+ */
+public class LibraryWatcher {
+
+	private static final long QUIET_PERIOD_MILLIS = 500;
+
+	private final Path bibtexFile;
+
+	private final Path abbreviationsFile;
+
+	private final Path citationsFile;
+
+	private final List<Path> documentDirs = new ArrayList<>();
+
+	private final WatchService watchService;
+
+	private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+
+	public LibraryWatcher(String bibtexFile) throws IOException {
+		this.bibtexFile = Paths.get(BibtexViewer.BIBTEX_DIR, bibtexFile).toAbsolutePath().normalize();
+		this.abbreviationsFile = Paths.get(BibtexViewer.BIBTEX_DIR, "MYabrv.bib").toAbsolutePath().normalize();
+		this.citationsFile = Paths.get(BibtexViewer.CITATION_DIR, "citations.csv").toAbsolutePath().normalize();
+		watchService = this.bibtexFile.getFileSystem().newWatchService();
+		watch(this.bibtexFile.getParent());
+		watch(this.citationsFile.getParent());
+		for (String documentDir : new String[] { BibtexViewer.PDF_DIR, BibtexViewer.COMMENTS_DIR }) {
+			Path dir = Paths.get(documentDir).toAbsolutePath().normalize();
+			if (Files.isDirectory(dir) && !documentDirs.contains(dir)) {
+				documentDirs.add(dir);
+				watchTree(dir);
+			}
+		}
+	}
+
+	/**
+	 * Waits for changes and passes the changed inputs to the given consumer
+	 * until the thread is interrupted.
+	 */
+	public void run(Consumer<Set<Input>> consumer) {
+		System.out.println("Watching " + bibtexFile + " for changes...");
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				Set<Input> changedInputs = EnumSet.noneOf(Input.class);
+				while (key != null) {
+					collectChanges(key, changedInputs);
+					key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				if (!changedInputs.isEmpty()) {
+					System.out.println("Changed: " + changedInputs);
+					consumer.accept(changedInputs);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void collectChanges(WatchKey key, Set<Input> changedInputs) {
+		Path dir = watchedDirs.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				// events have been lost, so anything may have changed
+				changedInputs.addAll(EnumSet.allOf(Input.class));
+				continue;
+			}
+			Path path = dir.resolve((Path) event.context());
+			if (path.equals(bibtexFile)) {
+				changedInputs.add(Input.BIBTEX);
+			} else if (path.equals(abbreviationsFile)) {
+				changedInputs.add(Input.ABBREVIATIONS);
+			} else if (path.equals(citationsFile)) {
+				changedInputs.add(Input.CITATIONS);
+			} else if (isDocument(path)) {
+				if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+					watchTree(path);
+				}
+				changedInputs.add(Input.DOCUMENTS);
+			}
+		}
+		if (!key.reset()) {
+			watchedDirs.remove(key);
+		}
+	}
+
+	private boolean isDocument(Path path) {
+		for (Path documentDir : documentDirs) {
+			if (path.startsWith(documentDir)) {
+				return Files.isDirectory(path) || path.getFileName().toString().toLowerCase().endsWith(".pdf");
+			}
+		}
+		return false;
+	}
+
+	private void watch(Path dir) throws IOException {
+		watchedDirs.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+	}
+
+	private void watchTree(Path root) {
+		try (Stream<Path> dirs = Files.walk(root)) {
+			dirs.filter(Files::isDirectory).forEach(dir -> {
+				try {
+					watch(dir);
+				} catch (IOException e) {
+					System.out.println("IOException for " + dir);
+				}
+			});
+		} catch (IOException e) {
+			System.out.println("IOException for " + root);
+		}
+	}
+}
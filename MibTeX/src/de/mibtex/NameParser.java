@@ -0,0 +1,233 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits a BibTeX author or editor field into names in a single pass over the
+ * field. Names are separated by "and" (or a semicolon) outside of braces and
+ * may be written as {@code First von Last}, {@code von Last, First}, or
+ * {@code von Last, Jr, First}. Commas and "and" within braces (e.g.,
+ * {@code {Barnes and Noble, Inc.}}) are part of the name. Each part is decoded
+ * with {@link LatexDecoder}.
+ */
+final class NameParser {
+
+	private final String field;
+
+	/** The parts of the current name separated by commas. */
+	private final List<String> parts = new ArrayList<>();
+
+	final List<PersonName> names = new ArrayList<>();
+
+	/**
+	 * The names as they have always been written to the author field: separated
+	 * by a comma and a space, and {@code Last, First} as {@code " First Last"}.
+	 */
+	final StringBuilder text;
+
+	private int segments;
+
+	private NameParser(String field) {
+		this.field = field;
+		this.text = new StringBuilder(field.length() + 16);
+	}
+
+	static NameParser parse(String field) {
+		NameParser parser = new NameParser(field);
+		parser.parse();
+		return parser;
+	}
+
+	private void parse() {
+		int depth = 0;
+		int start = 0;
+		int i = 0;
+		while (i < field.length()) {
+			char c = field.charAt(i);
+			if (c == '\\') {
+				// escaped characters (e.g., \, or \{) neither separate nor nest
+				i += 2;
+				continue;
+			}
+			if (c == '{') {
+				depth++;
+			} else if (c == '}') {
+				depth = Math.max(0, depth - 1);
+			} else if (depth == 0) {
+				if (c == ',') {
+					addPart(start, i);
+					start = i + 1;
+				} else if (c == ';' && i + 1 < field.length() && isWhitespace(field.charAt(i + 1))) {
+					endName(start, i);
+					i = skipWhitespace(i + 1);
+					start = i;
+					continue;
+				} else if (isWhitespace(c)) {
+					int next = skipWhitespace(i);
+					if (field.startsWith("and", next) && next + 3 < field.length()
+							&& isWhitespace(field.charAt(next + 3))) {
+						endName(start, i);
+						next = skipWhitespace(next + 3);
+						start = next;
+					}
+					i = next;
+					continue;
+				}
+			}
+			i++;
+		}
+		endName(start, field.length());
+	}
+
+	private void addPart(int start, int end) {
+		parts.add(field.substring(start, Math.min(end, field.length())));
+	}
+
+	private void endName(int start, int end) {
+		addPart(start, end);
+		if (segments++ > 0) {
+			text.append(", ");
+		}
+		int last = parts.size() - 1;
+		text.append(LatexDecoder.decode(parts.get(last)));
+		for (int i = 0; i < last; i++) {
+			text.append(' ').append(LatexDecoder.decode(parts.get(i)));
+		}
+		PersonName name = last == 0 ? parseFirstVonLast() : parseVonLastJrFirst();
+		if (!name.toString().isEmpty()) {
+			names.add(name);
+		}
+		parts.clear();
+	}
+
+	/**
+	 * Parses a name without commas: the first part ends before the first word in
+	 * lower case, which starts the von part, and the last part starts after the
+	 * last word in lower case. The last word is always in the last part.
+	 */
+	private PersonName parseFirstVonLast() {
+		List<String> rawWords = new ArrayList<>();
+		String[] words = splitWords(parts.get(0), rawWords);
+		int vonStart = -1;
+		int vonEnd = -1;
+		for (int i = 0; i < words.length - 1; i++) {
+			if (isLowerCase(rawWords.get(i), words[i])) {
+				if (vonStart < 0) {
+					vonStart = i;
+				}
+				vonEnd = i + 1;
+			}
+		}
+		if (vonStart < 0) {
+			vonStart = vonEnd = Math.max(0, words.length - 1);
+		}
+		return new PersonName(join(words, 0, vonStart), join(words, vonStart, vonEnd), join(words, vonEnd, words.length),
+				"");
+	}
+
+	/**
+	 * Parses a name with commas: the von and last parts before the first comma,
+	 * the jr parts between the commas, and the first part after the last comma.
+	 */
+	private PersonName parseVonLastJrFirst() {
+		List<String> rawWords = new ArrayList<>();
+		String[] words = splitWords(parts.get(0), rawWords);
+		int vonEnd = 0;
+		if (words.length > 1 && isLowerCase(rawWords.get(0), words[0])) {
+			for (int i = 0; i < words.length - 1; i++) {
+				if (isLowerCase(rawWords.get(i), words[i])) {
+					vonEnd = i + 1;
+				}
+			}
+		}
+		StringBuilder jr = new StringBuilder();
+		for (int i = 1; i < parts.size() - 1; i++) {
+			String part = LatexDecoder.decode(parts.get(i)).trim();
+			if (!part.isEmpty()) {
+				if (jr.length() > 0) {
+					jr.append(' ');
+				}
+				jr.append(part);
+			}
+		}
+		return new PersonName(LatexDecoder.decode(parts.get(parts.size() - 1)).trim(), join(words, 0, vonEnd),
+				join(words, vonEnd, words.length), jr.toString());
+	}
+
+	/**
+	 * Splits a part of a name at whitespace outside of braces, such that a group
+	 * in braces (e.g., {@code {Barnes and Noble}}) is a single word. Returns the
+	 * decoded words and adds the words as written to the given list. Words that
+	 * are empty when decoded (e.g., {@code {}}) are skipped.
+	 */
+	private static String[] splitWords(String part, List<String> rawWords) {
+		List<String> words = new ArrayList<>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < part.length(); i++) {
+			char c = part.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '{') {
+				depth++;
+			} else if (c == '}') {
+				depth = Math.max(0, depth - 1);
+			} else if (depth == 0 && isWhitespace(c)) {
+				addWord(part.substring(start, i), rawWords, words);
+				start = i + 1;
+			}
+		}
+		addWord(part.substring(Math.min(start, part.length())), rawWords, words);
+		return words.toArray(new String[0]);
+	}
+
+	private static void addWord(String rawWord, List<String> rawWords, List<String> words) {
+		String word = LatexDecoder.decode(rawWord).trim();
+		if (!word.isEmpty()) {
+			rawWords.add(rawWord);
+			words.add(word);
+		}
+	}
+
+	private static String join(String[] words, int start, int end) {
+		return String.join(" ", Arrays.asList(words).subList(start, end));
+	}
+
+	/**
+	 * Returns whether the first letter of the given word is in lower case. For
+	 * decoded umlauts (e.g., &uuml;), this is the letter of the entity. A word
+	 * starting with a group in braces has no case, unless the group starts with
+	 * a command (e.g., {@code {\"u}ber}).
+	 */
+	private static boolean isLowerCase(String rawWord, String word) {
+		if (rawWord.startsWith("{") && !rawWord.startsWith("{\\")) {
+			return false;
+		}
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if (Character.isLetter(c)) {
+				return Character.isLowerCase(c);
+			}
+		}
+		return false;
+	}
+
+	private int skipWhitespace(int i) {
+		while (i < field.length() && isWhitespace(field.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+}
@@ -0,0 +1,69 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex;
+
+import java.util.Objects;
+
+/**
+ * The name of an author or editor split into the four parts of a BibTeX name
+ * (e.g., {@code van Beethoven, Jr., Ludwig} has the first part {@code Ludwig},
+ * the von part {@code van}, the last part {@code Beethoven}, and the jr part
+ * {@code Jr.}). Parts that a name does not have are empty.
+ */
+public final class PersonName {
+
+	public final String first;
+	public final String von;
+	public final String last;
+	public final String jr;
+
+	private final String text;
+
+	public PersonName(String first, String von, String last, String jr) {
+		this.first = first;
+		this.von = von;
+		this.last = last;
+		this.jr = jr;
+		this.text = join(first, von, last, jr);
+	}
+
+	/**
+	 * Returns the name as shown by the exports: all parts that the name has in
+	 * the order first, von, last, and jr.
+	 */
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	private static String join(String first, String von, String last, String jr) {
+		StringBuilder name = new StringBuilder(first.length() + von.length() + last.length() + jr.length() + 3);
+		for (String part : new String[] { first, von, last, jr }) {
+			if (!part.isEmpty()) {
+				if (name.length() > 0) {
+					name.append(' ');
+				}
+				name.append(part);
+			}
+		}
+		return name.toString();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof PersonName)) {
+			return false;
+		}
+		PersonName name = (PersonName) other;
+		return first.equals(name.first) && von.equals(name.von) && last.equals(name.last) && jr.equals(name.jr);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(first, von, last, jr);
+	}
+}
@@ -0,0 +1,116 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces a fixed set of patterns in a text in a single pass. The patterns are
+ * grouped by their first character once, such that a text is only compared to
+ * the patterns starting with each of its characters. Where patterns overlap, the
+ * one starting first wins, and among those starting at the same character the
+ * longest one. Replaced text is not searched for patterns again.
+ */
+public final class TextRewriter {
+
+	private final Map<String, String> replacements;
+
+	/** The patterns starting with each ASCII character, longest first. */
+	private final Rule[][] asciiRules = new Rule[128][];
+
+	/** The patterns starting with any other character, longest first. */
+	private final Map<Character, Rule[]> otherRules = new HashMap<>();
+
+	private static class Rule {
+		final String pattern;
+		final String replacement;
+
+		Rule(String pattern, String replacement) {
+			this.pattern = pattern;
+			this.replacement = replacement;
+		}
+	}
+
+	/**
+	 * Creates a rewriter replacing each of the given non-empty patterns with its
+	 * replacement.
+	 */
+	public TextRewriter(Map<String, String> replacements) {
+		this.replacements = new LinkedHashMap<>(replacements);
+		Map<Character, List<Rule>> rules = new HashMap<>();
+		for (Map.Entry<String, String> replacement : this.replacements.entrySet()) {
+			String pattern = replacement.getKey();
+			if (pattern.isEmpty()) {
+				throw new IllegalArgumentException("Empty pattern");
+			}
+			rules.computeIfAbsent(pattern.charAt(0), c -> new ArrayList<>())
+					.add(new Rule(pattern, replacement.getValue()));
+		}
+		for (Map.Entry<Character, List<Rule>> first : rules.entrySet()) {
+			Rule[] sorted = first.getValue().toArray(new Rule[0]);
+			Arrays.sort(sorted, Comparator.comparingInt((Rule rule) -> rule.pattern.length()).reversed());
+			char c = first.getKey();
+			if (c < asciiRules.length) {
+				asciiRules[c] = sorted;
+			} else {
+				otherRules.put(c, sorted);
+			}
+		}
+	}
+
+	/**
+	 * Returns a rewriter with the given replacements in addition to the ones of
+	 * this rewriter. A pattern of both takes the given replacement.
+	 */
+	public TextRewriter withOverrides(Map<String, String> overrides) {
+		Map<String, String> merged = new LinkedHashMap<>(replacements);
+		merged.putAll(overrides);
+		return new TextRewriter(merged);
+	}
+
+	public String rewrite(String s) {
+		StringBuilder out = null;
+		int start = 0;
+		int i = 0;
+		while (i < s.length()) {
+			Rule rule = match(s, i);
+			if (rule == null) {
+				i++;
+				continue;
+			}
+			if (out == null) {
+				out = new StringBuilder(s.length() + 16);
+			}
+			out.append(s, start, i).append(rule.replacement);
+			i += rule.pattern.length();
+			start = i;
+		}
+		if (out == null) {
+			return s;
+		}
+		return out.append(s, start, s.length()).toString();
+	}
+
+	private Rule match(String s, int i) {
+		char c = s.charAt(i);
+		Rule[] rules = c < asciiRules.length ? asciiRules[c] : otherRules.get(c);
+		if (rules != null) {
+			for (Rule rule : rules) {
+				if (s.startsWith(rule.pattern, i)) {
+					return rule;
+				}
+			}
+		}
+		return null;
+	}
+}
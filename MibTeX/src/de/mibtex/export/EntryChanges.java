@@ -0,0 +1,239 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex.export;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.mibtex.BibtexEntry;
+import de.mibtex.BibtexFilter;
+import de.mibtex.EntryStore;
+import de.mibtex.FileUtils;
+
+/**
+ * The entries that have been added, changed, or removed since an exporter wrote
+ * its output the last time. For each entry, the exporter records the outputs
+ * (e.g., HTML pages) the entry is part of, such that in the next run only the
+ * outputs that contained a changed entry before or contain it after the change
+ * need to be written again.
+ */
+class EntryChanges {
+
+	private static final int VERSION = 1;
+
+	private final File file;
+
+	/**
+	 * Settings that affect the output of all entries. If they differ from the
+	 * last run, all outputs are affected.
+	 */
+	private final String settings;
+
+	private final Map<String, Long> oldFingerprints = new LinkedHashMap<>();
+
+	private final Map<String, Set<String>> oldOutputs = new HashMap<>();
+
+	private final Map<String, Long> fingerprints = new LinkedHashMap<>();
+
+	private final Map<String, Set<String>> outputs = new HashMap<>();
+
+	private final Set<String> writtenOutputs = new HashSet<>();
+
+	private final EntryStore store;
+
+	/** The indices of the added and changed entries in the store. */
+	private final List<Integer> changedEntries = new ArrayList<>();
+
+	private final Set<String> addedKeys = new HashSet<>();
+
+	private final Set<String> changedKeys = new HashSet<>();
+
+	private final Set<String> removedKeys = new HashSet<>();
+
+	private boolean allAffected;
+
+	/**
+	 * Compares the given entries to the entries the exporter with the given name
+	 * has written the last time with the given settings.
+	 */
+	EntryChanges(String exporterName, String settings, EntryStore store) {
+		this.file = new File(FileUtils.getOutputCacheDir(), exporterName + ".entries");
+		this.settings = settings;
+		this.store = store;
+		for (int i = 0; i < store.size(); i++) {
+			BibtexEntry entry = store.getEntry(i);
+			fingerprints.put(entry.key, entry.getFingerprint());
+		}
+		allAffected = !read();
+		for (int i = 0; i < store.size(); i++) {
+			BibtexEntry entry = store.getEntry(i);
+			Long oldFingerprint = oldFingerprints.get(entry.key);
+			if (oldFingerprint == null) {
+				addedKeys.add(entry.key);
+				changedEntries.add(i);
+			} else if (oldFingerprint != fingerprints.get(entry.key).longValue()) {
+				changedKeys.add(entry.key);
+				changedEntries.add(i);
+			}
+		}
+		for (String key : oldFingerprints.keySet()) {
+			if (!fingerprints.containsKey(key)) {
+				removedKeys.add(key);
+			}
+		}
+		// outputs list the entries in the order of the BibTeX file
+		List<String> oldOrder = new ArrayList<>(oldFingerprints.keySet());
+		oldOrder.removeAll(removedKeys);
+		List<String> order = new ArrayList<>(fingerprints.keySet());
+		order.removeAll(addedKeys);
+		if (!oldOrder.equals(order)) {
+			allAffected = true;
+		}
+	}
+
+	Set<String> getAddedKeys() {
+		return addedKeys;
+	}
+
+	Set<String> getChangedKeys() {
+		return changedKeys;
+	}
+
+	Set<String> getRemovedKeys() {
+		return removedKeys;
+	}
+
+	/**
+	 * Returns whether any entry has been added, changed, or removed.
+	 */
+	boolean hasChanges() {
+		return allAffected || !addedKeys.isEmpty() || !changedKeys.isEmpty() || !removedKeys.isEmpty();
+	}
+
+	/**
+	 * Returns whether the given output needs to be written again, because it
+	 * does not exist or because one of the entries included by the given filter
+	 * has changed, either before or after the change.
+	 */
+	boolean isAffected(File output, BibtexFilter filter) {
+		if (allAffected || !output.exists()) {
+			return true;
+		}
+		String name = output.getName();
+		for (String key : changedKeys) {
+			if (oldOutputs.getOrDefault(key, Set.of()).contains(name)) {
+				return true;
+			}
+		}
+		for (String key : removedKeys) {
+			if (oldOutputs.getOrDefault(key, Set.of()).contains(name)) {
+				return true;
+			}
+		}
+		EntryStore.Cursor entry = store.cursor();
+		for (int index : changedEntries) {
+			entry.moveTo(index);
+			if (filter.include(entry)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Records that the given output has been written with the given entry.
+	 */
+	synchronized void addOutput(File output, BibtexEntry entry) {
+		outputs.computeIfAbsent(entry.key, key -> new HashSet<>()).add(output.getName());
+	}
+
+	/**
+	 * Records that the given output has been written, such that the outputs of
+	 * the entries recorded in the last run are replaced for this output.
+	 */
+	synchronized void setWritten(File output) {
+		writtenOutputs.add(output.getName());
+	}
+
+	/**
+	 * Stores the fingerprints and outputs of all entries for the next run.
+	 * Outputs that have not been written in this run are kept from the last run.
+	 */
+	void write() {
+		file.getParentFile().mkdirs();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(VERSION);
+			out.writeUTF(settings);
+			out.writeInt(fingerprints.size());
+			for (Map.Entry<String, Long> fingerprint : fingerprints.entrySet()) {
+				String key = fingerprint.getKey();
+				Set<String> entryOutputs = new HashSet<>(outputs.getOrDefault(key, Set.of()));
+				if (!allAffected) {
+					for (String output : oldOutputs.getOrDefault(key, Set.of())) {
+						if (!writtenOutputs.contains(output)) {
+							entryOutputs.add(output);
+						}
+					}
+				}
+				out.writeUTF(key);
+				out.writeLong(fingerprint.getValue());
+				out.writeInt(entryOutputs.size());
+				for (String output : entryOutputs) {
+					out.writeUTF(output);
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("IOException for " + file);
+			file.delete();
+		}
+	}
+
+	/**
+	 * Reads the fingerprints and outputs of the last run. Returns false if they
+	 * are not available.
+	 */
+	private boolean read() {
+		if (!file.exists()) {
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != VERSION || !settings.equals(in.readUTF())) {
+				return false;
+			}
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				String key = in.readUTF();
+				oldFingerprints.put(key, in.readLong());
+				int outputCount = in.readInt();
+				Set<String> entryOutputs = new HashSet<>(outputCount);
+				for (int j = 0; j < outputCount; j++) {
+					entryOutputs.add(in.readUTF());
+				}
+				oldOutputs.put(key, entryOutputs);
+			}
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.out.println("IOException for " + file);
+			oldFingerprints.clear();
+			oldOutputs.clear();
+			return false;
+		}
+	}
+}
@@ -11,12 +11,14 @@ import de.mibtex.citationservice.CitationEntry;
 import org.jbibtex.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
-import java.util.function.Supplier;
 
 /**
  * A abstract class that implements often used methods for the exporters
@@ -25,8 +27,20 @@ import java.util.function.Supplier;
  */
 public abstract class Export {
 
+    /*
+     * The model shared by all exporters. It is only built by load and reload,
+     * while no exporter runs, and exporters running in parallel only read it.
+     * Thus, all collections except for entries are unmodifiable.
+     */
+
     protected static LinkedHashMap<String, BibtexEntry> entries;
 
+    /**
+     * The ids of the authors, years, venues, and tags of the entries in the same
+     * order, which the filters of the HTML pages test.
+     */
+    protected static EntryStore store;
+
     protected static List<String> authors;
 
     protected static List<String> titles;
@@ -37,25 +51,62 @@ public abstract class Export {
 
     protected static List<String> tags;
 
+    /** The entries of each author in the order of the BibTeX file. */
+    protected static Map<String, List<BibtexEntry>> entriesByAuthor;
+
+    /** The entries of each year in the order of the BibTeX file. */
+    protected static Map<Integer, List<BibtexEntry>> entriesByYear;
+
+    /** The entries of each venue (in lower case) in the order of the BibTeX file. */
+    protected static Map<String, List<BibtexEntry>> entriesByVenue;
+
+    /** The entries of each tag in the order of the BibTeX file. */
+    protected static Map<String, List<BibtexEntry>> entriesByTag;
+
+    private static File loadedFile;
+
+    private static OutputManifest outputs;
+
+    private static OutputCompressor compressor;
+
+    /** The owner of the outputs of this exporter in the output manifest. */
+    private String outputOwner = getClass().getSimpleName();
+
+    /**
+     * The inputs an exporter reads, such that only the affected exporters need
+     * to be run again if one of them changes.
+     */
+    public enum Input {
+        /** The BibTeX file with all entries. */
+        BIBTEX,
+        /** The citation counts in citations.csv. */
+        CITATIONS,
+        /** The abbreviations defined in MYabrv.bib. */
+        ABBREVIATIONS,
+        /** The PDF and comment files of the entries. */
+        DOCUMENTS
+    }
+
     public Export(String path, String file) throws Exception {
-        Reader reader = null;
-        try {
-            reader = new FileReader(FileUtils.concat(path, file));
-            BibTeXParser parser = new BibTeXParser() {
-                @Override
-                public void checkStringResolution(Key key, BibTeXString string) {
-                }
+        load(path, file);
+    }
 
-                @Override
-                public void checkCrossReferenceResolution(Key key,
-                                                          BibTeXEntry entry) {
-                }
-            };
-            BibTeXDatabase database = parser.parse(reader);
-            extractEntries(database);
-        } catch (FileNotFoundException e) {
+    /**
+     * Parses the given BibTeX file and builds the model shared by all
+     * exporters. Does nothing if this file has already been loaded, such that
+     * several exporters in the same run parse the file only once.
+     */
+    public static synchronized void load(String path, String file) throws Exception {
+        File bibtexFile = FileUtils.concat(path, file);
+        if (bibtexFile.equals(loadedFile)) {
+            return;
+        }
+        if (!bibtexFile.exists()) {
             System.out.println("BibTeX-File not found under " + path + file);
             System.exit(0);
+        }
+        try {
+            extractEntries(readEntries(bibtexFile));
         } catch (IOException e) {
             System.out.println("BibTeXParser has an IOExeption");
             System.exit(0);
@@ -63,33 +114,84 @@ public abstract class Export {
             System.out.println("BibTeX-File cannot be parsed");
             System.out.println(e.getMessage());
             System.exit(0);
-        } finally {
-            reader.close();
         }
-        readAuthors();
-        readTitles();
-        readYears();
-        readVenues();
-        readTags();
+        loadedFile = bibtexFile;
     }
 
-    private static void extractEntries(BibTeXDatabase database) {
+    /**
+     * Updates the model after the given inputs of the loaded BibTeX file have
+     * changed (e.g., in watch mode). If the BibTeX file cannot be read or
+     * parsed, the previous model is kept and false is returned.
+     */
+    public static synchronized boolean reload(Set<Input> changedInputs) {
+        if (changedInputs.contains(Input.DOCUMENTS)) {
+            DocumentIndex.invalidate();
+        }
+        if (changedInputs.contains(Input.BIBTEX)) {
+            try {
+                extractEntries(readEntries(loadedFile));
+            } catch (IOException e) {
+                System.out.println("IOException for " + loadedFile);
+                return false;
+            } catch (ParseException e) {
+                System.out.println("BibTeX-File cannot be parsed");
+                System.out.println(e.getMessage());
+                return false;
+            }
+        } else if (changedInputs.contains(Input.CITATIONS)) {
+            for (BibtexEntry entry : entries.values()) {
+                entry.citations = CitationEntry.NOT_IN_CITATION_SERVICE;
+                entry.lastUpdate = 0;
+            }
+            readCitations();
+        }
+        return true;
+    }
+
+    private static List<BibtexEntry> readEntries(File bibtexFile) throws IOException, ParseException {
+        byte[] content = Files.readAllBytes(bibtexFile.toPath());
+        BibtexSnapshot snapshot = new BibtexSnapshot(bibtexFile, content);
+        List<BibtexEntry> parsedEntries = BibtexViewer.USE_SNAPSHOT ? snapshot.read() : null;
+        if (parsedEntries == null) {
+            parsedEntries = parseEntries(Charset.defaultCharset().decode(ByteBuffer.wrap(content)));
+            if (BibtexViewer.USE_SNAPSHOT) {
+                snapshot.write(parsedEntries);
+            }
+        } else {
+            System.out.println("Loaded unchanged BibTeX-File from snapshot");
+        }
+        return parsedEntries;
+    }
+
+    private static List<BibtexEntry> parseEntries(CharBuffer content) throws ParseException {
+        if (BibtexViewer.PARALLEL_PARSING) {
+            List<BibtexEntry> parsedEntries = ParallelBibtexParser.parse(content.toString());
+            if (parsedEntries != null) {
+                return parsedEntries;
+            }
+        }
+        List<BibtexEntry> parsedEntries = new ArrayList<BibtexEntry>();
+        new BibtexReader(content).read(parsedEntries::add);
+        return parsedEntries;
+    }
+
+    private static void extractEntries(List<BibtexEntry> parsedEntries) {
         entries = new LinkedHashMap<String, BibtexEntry>();
-        for (BibTeXObject object : database.getObjects()) {
-            if (object instanceof BibTeXEntry) {
-                BibtexEntry bibtexEntry = new BibtexEntry((BibTeXEntry) object);
-                if (!entries.containsKey(bibtexEntry.key)) {
-                    entries.put(bibtexEntry.key, bibtexEntry);
-                } else {
-                    System.out.println("Found duplicate key: "
-                            + bibtexEntry.key);
-                }
+        for (BibtexEntry bibtexEntry : parsedEntries) {
+            if (!entries.containsKey(bibtexEntry.key)) {
+                entries.put(bibtexEntry.key, bibtexEntry);
+            } else {
+                System.out.println("Found duplicate key: "
+                        + bibtexEntry.key);
             }
         }
         readCitations();
+        readTitles();
+        readVocabularies();
+        store = new EntryStore(entries.values());
     }
 
-    private static void readCitations() {
+    protected static void readCitations() {
         List<CitationEntry> citationsEntries = new ArrayList<CitationEntry>();
         File fileHandle = new File(BibtexViewer.CITATION_DIR, "citations.csv");
         if (fileHandle.exists()) {
@@ -114,60 +216,76 @@ public abstract class Export {
 
     }
 
-    private static void readAuthors() {
-        authors = new ArrayList<String>();
-        for (BibtexEntry entry : entries.values())
-            for (String author : entry.authorList)
-                if (!authors.contains(author))
-                    authors.add(author);
-        Collections.sort(authors);
-    }
-
     private static void readTitles() {
         titles = new ArrayList<String>();
         for (BibtexEntry entry : entries.values())
             titles.add(entry.title);
         Collections.sort(titles);
+        titles = Collections.unmodifiableList(titles);
     }
 
-    private static void readYears() {
-        years = new ArrayList<Integer>();
-        for (BibtexEntry entry : entries.values())
-            if (!years.contains(entry.year))
-                years.add(entry.year);
-        Collections.sort(years);
-    }
-
-    private static void readVenues() {
-        venues = new ArrayList<String>();
+    /**
+     * Collects the distinct authors, years, venues, and tags and builds the
+     * indexes from them to the entries in a single pass over all entries. The
+     * number of entries having a value is the size of its list in the index.
+     */
+    private static void readVocabularies() {
+        SortedSet<String> venueNames = new TreeSet<>();
+        entriesByAuthor = new HashMap<>();
+        entriesByYear = new HashMap<>();
+        entriesByVenue = new HashMap<>();
+        entriesByTag = new HashMap<>();
         for (BibtexEntry entry : entries.values()) {
-        	if ("GPCE13".equals(entry.venue))
-        		entry.venue = "GPCE";
-        	if ("VaMoS20".equals(entry.venue))
-        		entry.venue = "VaMoS";
-            if (!venues.contains(entry.venue))
-                venues.add(entry.venue);
+            if ("GPCE13".equals(entry.venue))
+                entry.venue = "GPCE";
+            if ("VaMoS20".equals(entry.venue))
+                entry.venue = "VaMoS";
+            for (String author : entry.authorList)
+                addToIndex(entriesByAuthor, author, entry);
+            addToIndex(entriesByYear, entry.year, entry);
+            addToIndex(entriesByVenue, entry.venue.toLowerCase(), entry);
+            // venues differing only in case have the same entries, but are listed as written
+            venueNames.add(entry.venue);
+            for (List<String> tagList : entry.tagList.values())
+                for (String tag : tagList)
+                    addToIndex(entriesByTag, tag, entry);
         }
-        Collections.sort(venues);
+        authors = sortedList(entriesByAuthor.keySet());
+        years = sortedList(entriesByYear.keySet());
+        venues = Collections.unmodifiableList(new ArrayList<>(venueNames));
+        tags = sortedList(entriesByTag.keySet());
+        entriesByAuthor = unmodifiableIndex(entriesByAuthor);
+        entriesByYear = unmodifiableIndex(entriesByYear);
+        entriesByVenue = unmodifiableIndex(entriesByVenue);
+        entriesByTag = unmodifiableIndex(entriesByTag);
     }
 
-    private static void readTags() {
-        tags = new ArrayList<>();
-        for (BibtexEntry entry : entries.values())
-            for (List<String> tagList : entry.tagList.values()) {
-                for (String tag : tagList)
-                    if (!tags.contains(tag)) {
-                        tags.add(tag);
-                    }
-            }
-        Collections.sort(tags);
+    private static <T extends Comparable<T>> List<T> sortedList(Collection<T> values) {
+        List<T> list = new ArrayList<>(values);
+        Collections.sort(list);
+        return Collections.unmodifiableList(list);
+    }
+
+    private static <T> Map<T, List<BibtexEntry>> unmodifiableIndex(Map<T, List<BibtexEntry>> index) {
+        index.replaceAll((value, postings) -> Collections.unmodifiableList(postings));
+        return Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Adds the entry to the index for the given value, unless it has already
+     * been added for this value, as an entry may have the same value more than
+     * once (e.g., in several tag lists).
+     */
+    private static <T> void addToIndex(Map<T, List<BibtexEntry>> index, T value, BibtexEntry entry) {
+        List<BibtexEntry> postings = index.computeIfAbsent(value, v -> new ArrayList<>());
+        if (postings.isEmpty() || postings.get(postings.size() - 1) != entry)
+            postings.add(entry);
     }
 
     public static void printMissingPDFs() {
         for (BibtexEntry entry : entries.values()) {
-            File file = entry.getPDFPath();
-            if (!file.exists())
-                System.out.println(file.getName());
+            if (!entry.hasPDF())
+                System.out.println(entry.getPDFPath().getName());
         }
     }
 
@@ -186,7 +304,7 @@ public abstract class Export {
                 if (!available.remove(file))
                     System.err.println("File comparison failed: " + file);
             } else {
-                if (!"misc book".contains(entry.entry.getType().getValue()))
+                if (!"misc book".contains(entry.type))
                     missing.add(entry);
             }
         }
@@ -218,7 +336,7 @@ public abstract class Export {
                 System.out.println("Missing: "
                         + missingEntry.getPDFPath().getName());
                 System.out.println("Key: "
-                        + missingEntry.entry.getKey().getValue());
+                        + missingEntry.key);
                 System.out.println("Distance: " + minDistance);
                 System.out.println("Remaining: " + missing.size());
                 if (answer.next().equals("y")) {
@@ -243,21 +361,83 @@ public abstract class Export {
         }
     }
 
-    public static void cleanOutputFolder() {
-        File[] files = new File(BibtexViewer.OUTPUT_DIR).listFiles();
-        if (files != null)
-            for (File file : files)
-                file.delete();
+    private static synchronized OutputManifest getOutputs() {
+        if (outputs == null) {
+            outputs = new OutputManifest(BibtexViewer.OUTPUT_DIR);
+        }
+        return outputs;
     }
 
-    protected static long countEntries(BibtexFilter filter) {
-        long number = 0;
-        for (BibtexEntry entry : entries.values())
-            if (filter.include(entry))
-                number++;
-        return number;
+    /**
+     * Returns the compressor of the outputs or null if no compressed copies of
+     * the outputs are written.
+     */
+    private static synchronized OutputCompressor getCompressor() {
+        if (compressor == null && BibtexViewer.GZIP_OUTPUT) {
+            compressor = new OutputCompressor(getOutputs(), BibtexViewer.PARALLEL_EXPORT);
+        }
+        return compressor;
     }
-    
+
+    private static void awaitCompressedOutputs() {
+        OutputCompressor compressor = getCompressor();
+        if (compressor != null) {
+            compressor.await();
+        }
+    }
+
+    /**
+     * Sets the format of this exporter (e.g., "HTML"), which owns the outputs
+     * written by this exporter. Only orphaned outputs of the formats of a run
+     * are removed. By default, the outputs are owned by the class name.
+     */
+    public void setOutputOwner(String format) {
+        outputOwner = format;
+    }
+
+    /**
+     * Records that the given output is still up to date, although it has not
+     * been written again in this run.
+     */
+    protected void keepOutput(File path) {
+        getOutputs().keep(path, outputOwner);
+        OutputCompressor compressor = getCompressor();
+        if (compressor != null) {
+            compressor.keep(path, outputOwner);
+        }
+    }
+
+    /**
+     * Deletes the outputs of earlier runs of the given formats that no exporter
+     * has written or kept in this run (e.g., the page of an author that has been
+     * removed). Must only be called after the exporters of all these formats
+     * have been run.
+     */
+    public static void removeOrphanedOutputs(Collection<String> formats) {
+        awaitCompressedOutputs();
+        getOutputs().removeOrphans(formats, false);
+    }
+
+    /**
+     * Deletes all files in the output folder that no exporter has written or
+     * kept in this run, except for outputs of other formats than the given
+     * ones. Must only be called after the exporters of all these formats have
+     * been run.
+     */
+    public static void cleanOutputFolder(Collection<String> formats) {
+        awaitCompressedOutputs();
+        getOutputs().removeOrphans(formats, true);
+    }
+
+    /**
+     * Stores the hashes of all outputs, such that the next run detects
+     * unchanged outputs without reading them.
+     */
+    public static void writeOutputManifest() {
+        awaitCompressedOutputs();
+        getOutputs().write();
+    }
+
     protected static String readFromFile(String dir, File filename) {
     	return readFromFile(dir, filename.toString());
     }
@@ -296,56 +476,76 @@ public abstract class Export {
 		return null;
     }
 
-    protected static void writeToFile(String path, String filename, String content) {
-        writeToFile(new File(path + filename), content);
+    /**
+     * Content that is written to an output piece by piece, such that outputs do
+     * not need to be built in memory as a whole.
+     */
+    @FunctionalInterface
+    protected interface Content {
+        void writeTo(Writer out) throws IOException;
     }
-    
-    private static void writeToFile(File path, String content, Supplier<BufferedWriter> bufferFactory) {
-    	try {
-        	path.getParentFile().mkdirs();
-            String oldContent = readFromFile(path);
-            if (!content.equals(oldContent)) {
-                System.out.println("Updating " + path);
-                BufferedWriter out = bufferFactory.get();
-                out.write(content);
-                out.close();
-            } else {
-                System.out.println(path + " unchanged: No update required!");
-            }
-        } catch (FileNotFoundException e) {
-            System.out.println("Not Found " + path);
-        } catch (IOException e) {
-            System.out.println("IOException for " + path);
-        }
+
+    protected boolean writeToFile(String path, String filename, String content) {
+        return writeToFile(new File(path + filename), content);
     }
-    
-    protected static void writeToFile(File path, String content) {
-    	writeToFile(path, content, () -> {
-			try {
-				return new BufferedWriter(new FileWriter(path));
-			} catch (IOException e) {
-				e.printStackTrace();
-				return null;
-			}
-		});
+
+    protected boolean writeToFile(String path, String filename, Content content) {
+        return writeToFile(new File(path + filename), content);
     }
-    
-    protected static void writeToFileInUTF8(File path, String content) {
+
+    protected boolean writeToFile(File path, String content) {
+        return writeToFile(path, out -> out.write(content));
+    }
+
+    protected boolean writeToFile(File path, Content content) {
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder();
+        encoder.onMalformedInput(CodingErrorAction.REPLACE);
+        encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+        return writeToFile(path, content, encoder);
+    }
+
+    protected boolean writeToFileInUTF8(File path, String content) {
+        return writeToFileInUTF8(path, out -> out.write(content));
+    }
+
+    protected boolean writeToFileInUTF8(File path, Content content) {
 		CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
 		encoder.onMalformedInput(CodingErrorAction.REPORT);
 		encoder.onUnmappableCharacter(CodingErrorAction.REPORT);
-		writeToFile(path, content, encoder);
+		return writeToFile(path, content, encoder);
     }
-    
-    protected static void writeToFile(File path, String content, CharsetEncoder encoder) {
-    	writeToFile(path, content, () -> {
-			try {
-				return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), encoder));
-			} catch (IOException e) {
-				e.printStackTrace();
-				return null;
-			}
-		});
+
+    protected boolean writeToFile(File path, String content, CharsetEncoder encoder) {
+        return writeToFile(path, out -> out.write(content), encoder);
+    }
+
+    /**
+     * Writes the given content to the given output while it is rendered. The
+     * output is only replaced if its content changed. If enabled, a compressed
+     * copy of the output is written in the background. Returns false if the
+     * output could not be written.
+     */
+    protected boolean writeToFile(File path, Content content, CharsetEncoder encoder) {
+        try (OutputWriter out = new OutputWriter(path, encoder, getOutputs(), outputOwner)) {
+            content.writeTo(out);
+            boolean replaced = out.commit();
+            OutputCompressor compressor = getCompressor();
+            if (compressor != null) {
+                compressor.compress(path, replaced, outputOwner);
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("IOException for " + path);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the inputs this exporter reads. Exporters only depend on the
+     * BibTeX file unless they override this method.
+     */
+    public Set<Input> getInputs() {
+        return EnumSet.of(Input.BIBTEX);
     }
 
     public abstract void writeDocument();
@@ -6,6 +6,9 @@
  */
 package de.mibtex.export;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import de.mibtex.BibtexEntry;
 import de.mibtex.BibtexViewer;
 
@@ -19,18 +22,23 @@ public class ExportCSV extends Export {
     public ExportCSV(String path, String file) throws Exception {
         super(path, file);
     }
+
+    @Override
+    public Set<Input> getInputs() {
+        return EnumSet.of(Input.BIBTEX, Input.CITATIONS);
+    }
     
     
 
     @Override
     public void writeDocument() {
-        StringBuilder CSV = new StringBuilder();
-        for (BibtexEntry entry : entries.values()){
-            CSV.append("\"" + entry.key + "\";").append("\"" + entry.author + "\";").append("\"" + entry.title + "\";")
-                    .append("\"" + entry.venue + "\";").append(entry.year + ";").append(entry.getCitations() + ";")
-                    .append("\"" + entry.tags + "\"" + System.getProperty("line.separator"));
-        }
-        writeToFile(BibtexViewer.OUTPUT_DIR,"literature.csv",CSV.toString());
+        writeToFile(BibtexViewer.OUTPUT_DIR, "literature.csv", CSV -> {
+            for (BibtexEntry entry : entries.values()) {
+                CSV.append("\"" + entry.key + "\";").append("\"" + entry.author + "\";").append("\"" + entry.title + "\";")
+                        .append("\"" + entry.venue + "\";").append(entry.year + ";").append(entry.getCitations() + ";")
+                        .append("\"" + entry.tags + "\"" + System.getProperty("line.separator"));
+            }
+        });
     }
     
 }
@@ -14,10 +14,13 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import de.mibtex.BibtexEntry;
 import de.mibtex.BibtexViewer;
+import de.mibtex.TextRewriter;
 import de.mibtex.citationservice.CitationEntry;
 
 /**
@@ -28,6 +31,27 @@ import de.mibtex.citationservice.CitationEntry;
  */
 public class ExportCitations extends Export {
 
+	private static final TextRewriter TITLE_ENCODER;
+
+	static {
+		Map<String, String> replacements = new LinkedHashMap<>();
+		replacements.put("&auml;", "ae");
+		replacements.put("&ouml;", "oe");
+		replacements.put("&uuml;", "ue");
+		replacements.put("&Auml;", "Ae");
+		replacements.put("&Ouml;", "Oe");
+		replacements.put("�", "O");
+		replacements.put("&Uuml;", "Ue");
+		replacements.put("&szlig;", "ss");
+		replacements.put("&amp;", "and");
+		replacements.put("&#8211;", "-");
+		replacements.put("?", "");
+		replacements.put("\\", "");
+		replacements.put("/", "");
+		replacements.put("#", "");
+		TITLE_ENCODER = new TextRewriter(replacements);
+	}
+
 	public ExportCitations(String path, String file) throws Exception {
 		super(path, file);
 	}
@@ -45,6 +69,8 @@ public class ExportCitations extends Export {
 			}
 		}
 		writeCitationFile(new File(BibtexViewer.CITATION_DIR, "citations.csv"), newCitations);
+		// exporters running after this one share the model and should see the updated file
+		readCitations();
 	}
 
 	protected List<CitationEntry> readCitationFile(File file) {
@@ -85,22 +111,7 @@ public class ExportCitations extends Export {
 	}
 
 	public static String encodeTitle(String s) {
-		s = s.replace("&auml;", "ae");
-		s = s.replace("&ouml;", "oe");
-		s = s.replace("&uuml;", "ue");
-		s = s.replace("&Auml;", "Ae");
-		s = s.replace("&Ouml;", "Oe");
-		s = s.replace("�", "O");
-		s = s.replace("&Uuml;", "Ue");
-		s = s.replace("&szlig;", "ss");
-		s = s.replace("&amp;", "and");
-		s = s.replace("&#8211;", "-");
-		s = s.replace("?", "");
-		s = s.replace("\\", "");
-		s = s.replace("/", "");
-		s = s.replace("#", "");
-
-		return s;
+		return TITLE_ENCODER.rewrite(s);
 	}
 
 }
@@ -6,7 +6,7 @@
  */
 package de.mibtex.export;
 
-import java.io.File;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -28,10 +28,15 @@ public class ExportConflicts extends ExportTypo3Bibtex {
         super(path, file);
     }
 
+    @Override
+    public Set<Input> getInputs() {
+        return EnumSet.of(Input.BIBTEX, Input.ABBREVIATIONS);
+    }
+
     @Override
     public void writeDocument() {
 		// Parse the variables defined in MYabrv.bib
-    	Map<String, String> variables = readVariablesFromBibtexFile(new File(BibtexViewer.BIBTEX_DIR, VariablesFile));
+    	Map<String, String> variables = getVariables();
     	
     	// TODO Paul, why does this still contain publications for which I am only an editor?
 		// Transform all Bibtex-Entries to Typo3Entries, filter them and apply all modifiers.
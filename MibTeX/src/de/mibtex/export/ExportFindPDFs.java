@@ -10,7 +10,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.function.BiFunction;
 
 import javax.swing.JFileChooser;
@@ -34,6 +36,11 @@ public class ExportFindPDFs extends Export {
 		super(path, file);
 	}
 
+	@Override
+	public Set<Input> getInputs() {
+		return EnumSet.of(Input.BIBTEX, Input.DOCUMENTS);
+	}
+
 	@Override
 	public void writeDocument() {
 		// Specify if this should be a dry run or not.
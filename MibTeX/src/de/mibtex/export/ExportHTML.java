@@ -6,11 +6,21 @@
  */
 package de.mibtex.export;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 import de.mibtex.BibtexEntry;
 import de.mibtex.BibtexFilter;
 import de.mibtex.BibtexViewer;
+import de.mibtex.EntryStore;
 
 /**
  * A class to generate an HTML page for a given BibTeX file.
@@ -19,26 +29,65 @@ import de.mibtex.BibtexViewer;
  */
 public class ExportHTML extends Export {
 
+	private EntryChanges changes;
+
+	/**
+	 * The table row of each entry by its key. An entry is listed on several
+	 * pages (e.g., the index and the pages of its authors, venue, year, and
+	 * tags), but its row is rendered only once.
+	 */
+	private Map<String, String> rows;
+
+	/**
+	 * The pages to be written. Each page is checked by a task, which hands the
+	 * page to the writers if it needs to be written again.
+	 */
+	private List<Runnable> pages;
+
+	private WriterPool writers;
+
 	public ExportHTML(String path, String file) throws Exception {
 		super(path, file);
 	}
 
+	@Override
+	public Set<Input> getInputs() {
+		return EnumSet.of(Input.BIBTEX, Input.CITATIONS, Input.DOCUMENTS);
+	}
+
 	@Override
 	public void writeDocument() {
-		try {
+		// only pages listing an entry that changed since the last run are written
+		changes = new EntryChanges("html", BibtexViewer.PDF_DIR_REL + "," + BibtexViewer.COMMENTS_DIR_REL, store);
+		rows = new ConcurrentHashMap<>();
+		if (changes.hasChanges()) {
+			// rendering checks for PDFs and comments, so rows are rendered in parallel
+			entries.values().parallelStream().forEach(this::getHTMLRow);
+		}
+		pages = new ArrayList<>();
+		try (WriterPool writers = new WriterPool(BibtexViewer.PARALLEL_EXPORT)) {
+			this.writers = writers;
 			writeIndex();
 			writeAuthors();
 			writeYears();
 			writeVenues();
 			writeTags();
 			writeLists();
+			// pages are independent of each other and written to different files
+			Stream<Runnable> pageStream = BibtexViewer.PARALLEL_EXPORT ? pages.parallelStream() : pages.stream();
+			pageStream.forEach(Runnable::run);
 		} catch (Exception e) {
 			System.out.println(e.getMessage());
+			return;
+		} finally {
+			pages = null;
+			writers = null;
 		}
+		changes.write();
 	}
 
 	void writeIndex() {
-		writeToHTML("index.htm", new BibtexFilter() {
+		writeToHTML("index.htm", new ArrayList<>(entries.values()), new BibtexFilter() {
 			@Override
 			public String getTitle() {
 				return "Literature";
@@ -53,7 +102,8 @@ public class ExportHTML extends Export {
 
 	void writeAuthors() {
 		for (final String author : authors) {
-			writeToHTML(BibtexEntry.toURL(author) + ".htm", new BibtexFilter() {
+			final int authorId = store.getAuthorId(author);
+			writeToHTML(BibtexEntry.toURL(author) + ".htm", entriesByAuthor.get(author), new BibtexFilter() {
 				@Override
 				public String getTitle() {
 					return "Author = " + author;
@@ -63,13 +113,18 @@ public class ExportHTML extends Export {
 				public boolean include(BibtexEntry entry) {
 					return entry.authorList.contains(author);
 				}
+
+				@Override
+				public boolean include(EntryStore.Cursor entry) {
+					return entry.hasAuthor(authorId);
+				}
 			});
 		}
 	}
 
 	void writeYears() {
 		for (final int year : years) {
-			writeToHTML(year + ".htm", new BibtexFilter() {
+			writeToHTML(year + ".htm", entriesByYear.get(year), new BibtexFilter() {
 				@Override
 				public String getTitle() {
 					return "Year = " + year;
@@ -79,13 +134,19 @@ public class ExportHTML extends Export {
 				public boolean include(BibtexEntry entry) {
 					return entry.year == year;
 				}
+
+				@Override
+				public boolean include(EntryStore.Cursor entry) {
+					return entry.getYear() == year;
+				}
 			});
 		}
 	}
 
 	void writeVenues() {
 		for (final String venue : venues) {
-			writeToHTML(venue + ".htm", new BibtexFilter() {
+			final int venueId = store.getVenueId(venue);
+			writeToHTML(venue + ".htm", entriesByVenue.get(venue.toLowerCase()), new BibtexFilter() {
 				@Override
 				public String getTitle() {
 					return "Venue = " + venue;
@@ -95,13 +156,19 @@ public class ExportHTML extends Export {
 				public boolean include(BibtexEntry entry) {
 					return entry.venue.equalsIgnoreCase(venue);
 				}
+
+				@Override
+				public boolean include(EntryStore.Cursor entry) {
+					return entry.getVenueId() == venueId;
+				}
 			});
 		}
 	}
 
 	void writeTags() {
 		for (final String tag : tags) {
-			writeToHTML(BibtexEntry.toURL(tag) + ".htm", new BibtexFilter() {
+			final int tagId = store.getTagId(tag);
+			writeToHTML(BibtexEntry.toURL(tag) + ".htm", entriesByTag.get(tag), new BibtexFilter() {
 				@Override
 				public String getTitle() {
 					return "Tag = " + tag;
@@ -109,7 +176,15 @@ public class ExportHTML extends Export {
 
 				@Override
 				public boolean include(BibtexEntry entry) {
-					return entry.tagList.containsValue(tag);
+					for (List<String> tagList : entry.tagList.values())
+						if (tagList.contains(tag))
+							return true;
+					return false;
+				}
+
+				@Override
+				public boolean include(EntryStore.Cursor entry) {
+					return entry.hasTag(tagId);
 				}
 			});
 		}
@@ -124,74 +199,120 @@ public class ExportHTML extends Export {
 	}
 
 	void writeList(String title, List<?> list) {
+		pages.add(() -> renderList(title, list));
+	}
+
+	private void renderList(String title, List<?> list) {
 		String filename = BibtexEntry.toURL(title) + ".htm";
-		StringBuilder content = new StringBuilder();
-		writeHeader(content, title);
-		content.append("<center><h1>" + title
-				+ " <a href=\"index.htm\">(X)</a>");
-		content.append("</h1></center>\r\n");
-		content.append(list.size() + "<br/><br/>\r\n");
-		for (Object o : list) {
-			content.append("<a href=\"");
-			content.append(BibtexEntry.toURL(o.toString()));
-			content.append(".htm\">" + o + "</a><br/>\r\n");
+		File file = new File(BibtexViewer.OUTPUT_DIR + filename);
+		if (!changes.hasChanges() && file.exists()) {
+			keepOutput(file);
+			return;
 		}
-		writeFooter(content);
-		writeToFile(BibtexViewer.OUTPUT_DIR, filename, content.toString());
-	}
-
-	void writeToHTML(String filename, BibtexFilter filter) {
-		StringBuilder content = new StringBuilder();
-		writeHeader(content, "Literature");
-		writeBibtex(content, filter);
-		writeFooter(content);
-		writeToFile(BibtexViewer.OUTPUT_DIR, filename, content.toString());
-	}
-
-	private void writeHeader(StringBuilder builder, String title) {
-		builder.append("<html><head>");
-		builder.append("<meta http-equiv=\"Content-Type\" content=\"text/html; charset=ISO-8859-1\">");
-		builder.append("<style type=\"text/css\">body {font-family:Verdana; color:red;} a {text-decoration:none; color:black;} table {border-collapse:collapse;} td,th {border:thin solid lightgray; padding:3px; text-align:center;}</style>");
-		builder.append("<title>");
-		builder.append(title);
-		builder.append("</title>");
-		builder.append("</head><body>\r\n");
-	}
-
-	private void writeFooter(StringBuilder builder) {
-		builder.append("</body></html>\r\n");
-	}
-
-	void writeBibtex(StringBuilder builder, BibtexFilter filter) {
-		builder.append("<center><h1>" + filter.getTitle());
-		if (!filter.getTitle().equalsIgnoreCase("Literature"))
-			builder.append(" <a href=\"index.htm\">(X)</a>");
-		builder.append("</h1></center>\r\n");
-		builder.append(countEntries(filter));
-		builder.append("<table><tr>");
-		writeTableHeading(builder, "Author");
-		writeTableHeading(builder, "Title");
-		writeTableHeading(builder, "Venue");
-		writeTableHeading(builder, "Tag");
-		writeTableHeading(builder, "Cites");
-		writeTableHeading(builder, "Year");
-		builder.append("</tr>\r\n");
-		for (BibtexEntry entry : entries.values())
-			if (filter.include(entry)) {
-				builder.append("<tr>\r\n<td>");
-				builder.append(getHTMLAuthor(entry) + "</td><td>");
-				builder.append(getHTMLTitle(entry) + "</td><td>");
-				builder.append(getHTMLVenue(entry) + "</td><td>");
-				builder.append(getHTMLTags(entry) + "</td><td>");
-				builder.append(getHTMLCitations(entry) + "</td><td>");
-				builder.append(getHTMLYear(entry) + "</td>\r\n");
-				builder.append("</tr>\r\n");
+		writers.submit(() -> writePage(filename, out -> {
+			writeHeader(out, title);
+			out.write("<center><h1>" + title
+					+ " <a href=\"index.htm\">(X)</a>");
+			out.write("</h1></center>\r\n");
+			out.write(list.size() + "<br/><br/>\r\n");
+			for (Object o : list) {
+				out.write("<a href=\"");
+				out.write(BibtexEntry.toURL(o.toString()));
+				out.write(".htm\">" + o + "</a><br/>\r\n");
 			}
-		builder.append("</table>\r\n");
+			writeFooter(out);
+		}));
+	}
+
+	/**
+	 * Writes a page listing the given entries, which are the entries included by
+	 * the given filter.
+	 */
+	void writeToHTML(String filename, List<BibtexEntry> filteredEntries, BibtexFilter filter) {
+		pages.add(() -> renderToHTML(filename, filteredEntries, filter));
+	}
+
+	private void renderToHTML(String filename, List<BibtexEntry> filteredEntries, BibtexFilter filter) {
+		File file = new File(BibtexViewer.OUTPUT_DIR + filename);
+		if (!changes.isAffected(file, filter)) {
+			keepOutput(file);
+			return;
+		}
+		writers.submit(() -> {
+			writePage(filename, out -> {
+				writeHeader(out, "Literature");
+				writeBibtex(out, filter.getTitle(), filteredEntries);
+				writeFooter(out);
+			});
+			// recorded only once the page has been written
+			changes.setWritten(file);
+			for (BibtexEntry entry : filteredEntries)
+				changes.addOutput(file, entry);
+		});
+	}
+
+	/**
+	 * Writes the given page or throws an exception if it cannot be written. The
+	 * exception is rethrown when the writers are closed, such that the entries of
+	 * the last run are kept and the next run writes the page again.
+	 */
+	private void writePage(String filename, Content content) {
+		if (!writeToFile(BibtexViewer.OUTPUT_DIR, filename, content)) {
+			throw new IllegalStateException("Could not write " + filename);
+		}
+	}
+
+	private void writeHeader(Writer out, String title) throws IOException {
+		out.write("<html><head>");
+		out.write("<meta http-equiv=\"Content-Type\" content=\"text/html; charset=ISO-8859-1\">");
+		out.write("<style type=\"text/css\">body {font-family:Verdana; color:red;} a {text-decoration:none; color:black;} table {border-collapse:collapse;} td,th {border:thin solid lightgray; padding:3px; text-align:center;}</style>");
+		out.write("<title>");
+		out.write(title);
+		out.write("</title>");
+		out.write("</head><body>\r\n");
+	}
+
+	private void writeFooter(Writer out) throws IOException {
+		out.write("</body></html>\r\n");
+	}
+
+	void writeBibtex(Writer out, String title, List<BibtexEntry> filteredEntries) throws IOException {
+		out.write("<center><h1>" + title);
+		if (!title.equalsIgnoreCase("Literature"))
+			out.write(" <a href=\"index.htm\">(X)</a>");
+		out.write("</h1></center>\r\n");
+		out.write(String.valueOf(filteredEntries.size()));
+		out.write("<table><tr>");
+		writeTableHeading(out, "Author");
+		writeTableHeading(out, "Title");
+		writeTableHeading(out, "Venue");
+		writeTableHeading(out, "Tag");
+		writeTableHeading(out, "Cites");
+		writeTableHeading(out, "Year");
+		out.write("</tr>\r\n");
+		for (BibtexEntry entry : filteredEntries) {
+			out.write(getHTMLRow(entry));
+		}
+		out.write("</table>\r\n");
+	}
+
+	private String getHTMLRow(BibtexEntry entry) {
+		return rows.computeIfAbsent(entry.key, key -> {
+			StringBuilder row = new StringBuilder();
+			row.append("<tr>\r\n<td>");
+			row.append(getHTMLAuthor(entry) + "</td><td>");
+			row.append(getHTMLTitle(entry) + "</td><td>");
+			row.append(getHTMLVenue(entry) + "</td><td>");
+			row.append(getHTMLTags(entry) + "</td><td>");
+			row.append(getHTMLCitations(entry) + "</td><td>");
+			row.append(getHTMLYear(entry) + "</td>\r\n");
+			row.append("</tr>\r\n");
+			return row.toString();
+		});
 	}
 
-	private void writeTableHeading(StringBuilder builder, String title) {
-		builder.append("<th><a href=\"" + title + "s.htm\">" + title
+	private void writeTableHeading(Writer out, String title) throws IOException {
+		out.write("<th><a href=\"" + title + "s.htm\">" + title
 				+ "</a></th>");
 	}
 
@@ -210,7 +331,7 @@ public class ExportHTML extends Export {
 		}
 		
 		String htmlTitle = "";
-		if (entry.getPDFPath().exists()) {
+		if (entry.hasPDF()) {
 			htmlTitle += "<a href=\"" + entry.getRelativePDFPath() + "\">";
 			htmlTitle += title;
 			htmlTitle += "</a>";
@@ -229,7 +350,7 @@ public class ExportHTML extends Export {
 
 	private String getHTMLTags(BibtexEntry entry) {
 		String s = entry.key + ", ";
-		if (entry.getCommentsPath().exists()) {
+		if (entry.hasComments()) {
 			s = " <a href=\"" + entry.getRelativeCommentsPath() + "\">" + s + "</a>";
 		}
 		for (List<String> tags : entry.tagList.values())
@@ -7,7 +7,9 @@
 package de.mibtex.export;
 
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import de.mibtex.BibtexEntry;
 import de.mibtex.BibtexViewer;
@@ -24,23 +26,28 @@ public class ExportJSON extends Export{
         super(path, file);
     }
 
+    @Override
+    public Set<Input> getInputs() {
+        return EnumSet.of(Input.BIBTEX, Input.CITATIONS);
+    }
+
     @Override
     public void writeDocument() {
-        StringBuilder JSON = new StringBuilder();
-        JSON.append("["+System.getProperty("line.separator"));
-        for (BibtexEntry entry : entries.values()) {
-            JSON.append("{")
-            .append(getJSONAttribute("key",entry.key)+",")
-            .append(getJSONAttribute("authors",entry.authorList)+",")
-            .append(getJSONAttribute("title", entry.title)+",")
-            .append(getJSONAttribute("venues", entry.venue)+",")
-            .append(getJSONAttribute("year", entry.year)+",")
-            .append(getJSONAttribute("citations", entry.getCitations())+",")
-            .append(getJSONAttributeFromList("tags", entry.tagList.values()))
-            .append("},"+System.getProperty("line.separator"));
-        }
-        JSON.append("]");
-        writeToFile(BibtexViewer.OUTPUT_DIR,"literature.json",JSON.toString());
+        writeToFile(BibtexViewer.OUTPUT_DIR, "literature.json", JSON -> {
+            JSON.append("["+System.getProperty("line.separator"));
+            for (BibtexEntry entry : entries.values()) {
+                JSON.append("{")
+                .append(getJSONAttribute("key",entry.key)+",")
+                .append(getJSONAttribute("authors",entry.authorList)+",")
+                .append(getJSONAttribute("title", entry.title)+",")
+                .append(getJSONAttribute("venues", entry.venue)+",")
+                .append(getJSONAttribute("year", entry.year)+",")
+                .append(getJSONAttribute("citations", entry.getCitations())+",")
+                .append(getJSONAttributeFromList("tags", entry.tagList.values()))
+                .append("},"+System.getProperty("line.separator"));
+            }
+            JSON.append("]");
+        });
     }
 
     private String getJSONAttribute(String key, int str) {
@@ -7,9 +7,16 @@
 package de.mibtex.export;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import de.mibtex.BibtexEntry;
@@ -23,56 +30,311 @@ import de.mibtex.export.typo3.Typo3Entry;
  */
 public class ExportNewHTML extends Export {
 
+    private static final String DATA_INSERT_HERE = "DATA_INSERT_HERE";
+
+    private static final String DATA_FILE = "index.data.js";
+
+    private static final String SEARCH_FILE = "index.search.js";
+
+    private static final String BIB_PATH = "INSERT_BIB_PATH";
+
+    private static final String VENUE_OPTIONS = "INSERT_VENUE_OPTIONS";
+
+    private static final String TAG_OPTIONS = "INSERT_TAG_OPTIONS";
+
+    private static final String YEAR_OPTIONS = "INSERT_YEAR_OPTIONS";
+
+    private static final Template ROWS_TEMPLATE = new Template("index_in.html", DATA_INSERT_HERE, BIB_PATH,
+            VENUE_OPTIONS, TAG_OPTIONS, YEAR_OPTIONS);
+
+    private static final Template DATA_TEMPLATE = new Template("index_data.html", BIB_PATH);
+
+    /** The variables defined in the variables file of the Typo3 export. */
+    private Map<String, String> variables;
+
+    /** The index of each author, venue, and tag in the data written for the page. */
+    private Map<String, Integer> authorIds, venueIds, tagIds;
+
     public ExportNewHTML(String path, String file) throws Exception {
         super(path, file);
     }
 
+    @Override
+    public Set<Input> getInputs() {
+        return EnumSet.of(Input.BIBTEX, Input.CITATIONS, Input.ABBREVIATIONS, Input.DOCUMENTS);
+    }
+
     @Override
     public void writeDocument() {
-        String input = readFromFile("resources/", new File("index_in.html"));
-        StringBuilder HTML = new StringBuilder();
+        variables = ExportTypo3Bibtex.getVariables();
+        if (BibtexViewer.CLIENT_SIDE_DATA) {
+            writeData();
+        } else {
+            writeRows();
+        }
+    }
+
+    /**
+     * Writes all entries as rows of the table in index.html.
+     */
+    private void writeRows() {
         Set<String> venues = new HashSet<>();
         Set<String> tags = new HashSet<>();
         Set<Integer> years = new HashSet<>();
         for (BibtexEntry entry : entries.values()) {
-            HTML.append("<tr id=\"").append(entry.key).append("\">")
-                    .append("<td>").append(generateAuthorLinks(entry)).append("</td>")
-                    .append("<td>").append(generateTitleLink(entry)).append("</td>")
-                    .append("<td>").append(generateVenueLink(entry)).append("</td>")
-                    .append("<td>").append(generateTagLinks(entry)).append("</td>")
-                    .append("<td>").append(generateCitationLink(entry)).append("</td>")
-                    .append("<td>").append(generateYearLink(entry)).append("</td>")
-                    .append("</tr>");
             venues.add(entry.venue);
             years.add(entry.year);
             tags.addAll(generateTagList(entry));
         }
-        input = input.replace("DATA_INSERT_HERE", HTML.toString());
-        input = input.replace("INSERT_BIB_PATH", BibtexViewer.BIBTEX_DIR
-                + "literature.bib");
-        input = insertOptionsStr(input, "INSERT_VENUE_OPTIONS", venues);
-        input = insertOptionsStr(input, "INSERT_TAG_OPTIONS", tags);
-        input = insertOptionsInt(input, "INSERT_YEAR_OPTIONS", years);
+        Map<String, Content> slots = new HashMap<>();
+        slots.put(BIB_PATH, HTML -> HTML.write(BibtexViewer.BIBTEX_DIR + "literature.bib"));
+        slots.put(VENUE_OPTIONS, HTML -> writeOptions(HTML, venues));
+        slots.put(TAG_OPTIONS, HTML -> writeOptions(HTML, tags));
+        slots.put(YEAR_OPTIONS, HTML -> writeOptions(HTML, years));
+        slots.put(DATA_INSERT_HERE, HTML -> {
+            for (BibtexEntry entry : entries.values()) {
+                HTML.append("<tr id=\"").append(entry.key).append("\">")
+                        .append("<td>").append(generateAuthorLinks(entry)).append("</td>")
+                        .append("<td>").append(generateTitleLink(entry)).append("</td>")
+                        .append("<td>").append(generateVenueLink(entry)).append("</td>")
+                        .append("<td>").append(generateTagLinks(entry)).append("</td>")
+                        .append("<td>").append(generateCitationLink(entry)).append("</td>")
+                        .append("<td>").append(generateYearLink(entry)).append("</td>")
+                        .append("</tr>");
+            }
+        });
+        writeToFile(BibtexViewer.OUTPUT_DIR, "index.html", HTML -> ROWS_TEMPLATE.writeTo(HTML, slots));
+    }
 
-        writeToFile(BibtexViewer.OUTPUT_DIR, "index.html", input);
+    /**
+     * Writes all entries to index.data.js, from which index.html renders only
+     * the visible rows of the table, and a search index to index.search.js.
+     * Filtering and sorting is done on arrays instead of the rows of the table.
+     * With a shard size, the entries are split into shards of this many entries,
+     * which are written to index.data.0.js and so on and loaded by the page
+     * when their rows are shown.
+     */
+    private void writeData() {
+        Map<String, Content> slots = new HashMap<>();
+        slots.put(BIB_PATH, HTML -> HTML.write(BibtexViewer.BIBTEX_DIR + "literature.bib"));
+        writeToFile(BibtexViewer.OUTPUT_DIR, "index.html", HTML -> DATA_TEMPLATE.writeTo(HTML, slots));
+        List<BibtexEntry> list = new ArrayList<>(entries.values());
+        List<String> preprints = new ArrayList<>(entries.size());
+        SearchIndex search = new SearchIndex();
+        for (BibtexEntry entry : entries.values()) {
+            String preprint = getPreprintURL(entry);
+            preprints.add(preprint);
+            search.add(String.join(", ", getAuthorNames(entry)), getTitle(entry), entry.venue,
+                    String.join(", ", getSearchTags(entry, preprint)), getCitationsPerYear(entry), entry.year);
+        }
+        authorIds = new LinkedHashMap<>();
+        venueIds = new LinkedHashMap<>();
+        tagIds = new LinkedHashMap<>();
+        final boolean sharded = BibtexViewer.SHARD_SIZE > 0;
+        final int shardSize = sharded ? BibtexViewer.SHARD_SIZE : list.size();
+        // loaded with script tags, as browsers do not fetch files from file:// URLs
+        if (sharded) {
+            for (int from = 0; from < list.size(); from += shardSize) {
+                final int shard = from / shardSize;
+                final List<BibtexEntry> shardEntries = list.subList(from, Math.min(from + shardSize, list.size()));
+                final List<String> shardPreprints = preprints.subList(from, from + shardEntries.size());
+                writeToFileInUTF8(new File(BibtexViewer.OUTPUT_DIR, "index.data." + shard + ".js"), out -> {
+                    out.write("mibtexShard(" + shard + ", ");
+                    writeShard(new JSONWriter(out), shardEntries, shardPreprints);
+                    out.write(");\n");
+                });
+            }
+        }
+        writeToFileInUTF8(new File(BibtexViewer.OUTPUT_DIR, DATA_FILE), out -> {
+            out.write("var mibtexData = ");
+            JSONWriter json = new JSONWriter(out);
+            json.beginObject();
+            json.name("count").value(list.size());
+            json.name("shardSize").value(shardSize);
+            if (!sharded) {
+                json.name("shards").beginArray();
+                writeShard(json, list, preprints);
+                json.endArray();
+            }
+            json.name("citations").beginArray();
+            for (BibtexEntry entry : list) {
+                json.value(entry.citations);
+            }
+            json.endArray();
+            json.name("year").beginArray();
+            for (BibtexEntry entry : list) {
+                json.value(entry.year);
+            }
+            json.endArray();
+            writeDictionary(json, "authorNames", authorIds);
+            writeDictionary(json, "venueNames", venueIds);
+            writeDictionary(json, "tagNames", tagIds);
+            json.endObject();
+            out.write(";\n");
+        });
+        writeToFileInUTF8(new File(BibtexViewer.OUTPUT_DIR, SEARCH_FILE), out -> {
+            out.write("var mibtexSearch = ");
+            search.write(new JSONWriter(out));
+            out.write(";\n");
+        });
     }
 
-    private String insertOptionsStr(String input, String replace,
-                                    Set<String> set) {
-        StringBuilder HTML = new StringBuilder();
-        for (String el : set) {
-            HTML.append("<option value=\"").append(el).append("\">");
+    /**
+     * Writes one array per column of the table with a value for each of the
+     * given entries. Authors, venues, and tags are stored once in a dictionary
+     * and referenced by their index.
+     */
+    private void writeShard(JSONWriter json, List<BibtexEntry> shard, List<String> preprints)
+            throws IOException {
+        json.beginObject();
+        json.name("key").beginArray();
+        for (BibtexEntry entry : shard) {
+            json.value(entry.key);
+        }
+        json.endArray();
+        json.name("authors").beginArray();
+        for (BibtexEntry entry : shard) {
+            json.beginArray();
+            for (String author : getAuthorNames(entry)) {
+                json.value(getId(authorIds, author));
+            }
+            json.endArray();
+        }
+        json.endArray();
+        json.name("title").beginArray();
+        for (BibtexEntry entry : shard) {
+            json.value(getTitle(entry));
+        }
+        json.endArray();
+        json.name("pdf").beginArray();
+        for (BibtexEntry entry : shard) {
+            json.value(entry.getRelativePDFPath());
+        }
+        json.endArray();
+        json.name("hasPdf").beginArray();
+        for (BibtexEntry entry : shard) {
+            json.value(entry.hasPDF());
+        }
+        json.endArray();
+        json.name("venue").beginArray();
+        for (BibtexEntry entry : shard) {
+            json.value(getId(venueIds, entry.venue.trim()));
+        }
+        json.endArray();
+        json.name("comments").beginArray();
+        for (BibtexEntry entry : shard) {
+            json.value(entry.hasComments() ? entry.getRelativeCommentsPath() : null);
+        }
+        json.endArray();
+        json.name("doi").beginArray();
+        for (BibtexEntry entry : shard) {
+            json.value(entry.doi);
+        }
+        json.endArray();
+        json.name("url").beginArray();
+        for (BibtexEntry entry : shard) {
+            json.value(entry.url);
+        }
+        json.endArray();
+        json.name("preprint").beginArray();
+        for (String preprint : preprints) {
+            json.value(preprint);
+        }
+        json.endArray();
+        json.name("tags").beginArray();
+        for (BibtexEntry entry : shard) {
+            json.beginArray();
+            for (String tag : getTagNames(entry)) {
+                json.value(getId(tagIds, tag));
+            }
+            json.endArray();
         }
-        return input.replace(replace, HTML.toString());
+        json.endArray();
+        json.endObject();
     }
 
-    private String insertOptionsInt(String input, String replace,
-                                    Set<Integer> set) {
-        StringBuilder HTML = new StringBuilder();
-        for (int el : set) {
-            HTML.append("<option value=\"").append(el).append("\">");
+    private static List<String> getAuthorNames(BibtexEntry entry) {
+        List<String> authors = new ArrayList<>();
+        if (entry.authorList.isEmpty()) {
+            authors.add("unknown");
+        }
+        for (String author : entry.authorList) {
+            authors.add(author.trim());
+        }
+        return authors;
+    }
+
+    private static String getTitle(BibtexEntry entry) {
+        return BibtexEntry.isDefined(entry.title) ? entry.title : "unspecified";
+    }
+
+    /**
+     * Returns the tags of the entry, each with the name of its tag field as
+     * prefix.
+     */
+    private static List<String> getTagNames(BibtexEntry entry) {
+        List<String> tags = new ArrayList<>();
+        for (String tag : BibtexViewer.TAGS) {
+            List<String> tagList = entry.tagList.get(tag);
+            if (tagList != null) {
+                String prefix = tag.replace("-tags", ":").replace("Tags", ":");
+                for (String t : tagList) {
+                    tags.add(prefix + t.trim());
+                }
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * Returns the text that is searched for tags, which is the text of the
+     * tags column in the table.
+     */
+    private static List<String> getSearchTags(BibtexEntry entry, String preprint) {
+        List<String> tags = new ArrayList<>();
+        tags.add(entry.key);
+        if (!entry.doi.isEmpty()) {
+            tags.add("doi");
+        }
+        if (!entry.url.isEmpty()) {
+            tags.add("url");
+        }
+        if (preprint != null) {
+            tags.add("preprint");
+        }
+        tags.addAll(getTagNames(entry));
+        return tags;
+    }
+
+    /**
+     * Returns the citations per year as shown by
+     * {@link BibtexEntry#getCitationsPerYear()}.
+     */
+    private static int getCitationsPerYear(BibtexEntry entry) {
+        int totalYears = Calendar.getInstance().get(Calendar.YEAR) - entry.year;
+        if (entry.citations <= 0 || entry.year <= 0 || totalYears < 2) {
+            return entry.citations;
+        }
+        return (int) ((double) entry.citations / totalYears + 0.5);
+    }
+
+    private static int getId(Map<String, Integer> dictionary, String value) {
+        return dictionary.computeIfAbsent(value, v -> dictionary.size());
+    }
+
+    private static void writeDictionary(JSONWriter json, String name, Map<String, Integer> dictionary)
+            throws IOException {
+        json.name(name).beginArray();
+        for (String value : dictionary.keySet()) {
+            json.value(value);
+        }
+        json.endArray();
+    }
+
+    private static void writeOptions(Writer HTML, Set<?> set) throws IOException {
+        for (Object el : set) {
+            HTML.append("<option value=\"").append(el.toString()).append("\">");
         }
-        return input.replace(replace, HTML.toString());
     }
 
     private static String generateTitleLink(BibtexEntry entry) {
@@ -105,18 +367,8 @@ public class ExportNewHTML extends Export {
     }
 
     private String generateTagLinks(BibtexEntry entry) {
-        final Typo3Entry entryAsT3 = ExportTypo3Bibtex.applyModifiers(
-                new Typo3Entry(
-                        entry,
-                        ExportTypo3Bibtex.readVariablesFromBibtexFile(new File(
-                                BibtexViewer.BIBTEX_DIR,
-                                ExportTypo3Bibtex.VariablesFile
-                        ))
-                )
-        );
-
         StringBuilder html = new StringBuilder();
-		if (entry.getCommentsPath().exists()) {
+		if (entry.hasComments()) {
 			html.append(" <a href=\"");
 			html.append(entry.getRelativeCommentsPath());
 			html.append("\">");
@@ -140,10 +392,10 @@ public class ExportNewHTML extends Export {
 			html.append("\">url</a>, ");
 		}
         // Typo3 URL
-        final boolean hasT3URL = !entryAsT3.url.isBlank();
-        if (hasT3URL && !(hasURL && entry.url.equals(entryAsT3.url))) {
+        final String preprintURL = getPreprintURL(entry);
+        if (preprintURL != null) {
             html.append("<a href=\"");
-            html.append(entryAsT3.url);
+            html.append(preprintURL);
             html.append("\">preprint</a>, ");
         }
         // other tags
@@ -165,6 +417,20 @@ public class ExportNewHTML extends Export {
         return html.toString();
     }
 
+    /**
+     * Returns the URL of the entry in the Typo3 export if it differs from the
+     * URL of the entry, or null otherwise.
+     */
+    private String getPreprintURL(BibtexEntry entry) {
+        final Typo3Entry entryAsT3 = ExportTypo3Bibtex.applyModifiers(
+                new Typo3Entry(entry, variables)
+        );
+        if (entryAsT3.url.isBlank() || entry.url.equals(entryAsT3.url)) {
+            return null;
+        }
+        return entryAsT3.url;
+    }
+
     private List<String> generateTagList(BibtexEntry entry) {
         List<String> tags = new ArrayList<>();
         tags.add(entry.key);
@@ -18,9 +18,12 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -66,6 +69,9 @@ public class ExportTypo3Bibtex extends Export {
      */
     static final String VariablesFile = MYABRV;
 
+    private static final ResourceCache<Map<String, String>> VARIABLES = new ResourceCache<>(
+            file -> Collections.unmodifiableMap(readVariablesFromBibtexFile(file)));
+
     /**
      * Select the filter you need to export only the publications you are interested in.
      * A Typo3Entry t gets selected if bibFilter.test(t) returns 'true'.
@@ -154,6 +160,11 @@ public class ExportTypo3Bibtex extends Export {
         super(path, file);
     }
 
+    @Override
+    public Set<Input> getInputs() {
+        return EnumSet.of(Input.BIBTEX, Input.ABBREVIATIONS);
+    }
+
     public static Typo3Entry applyModifiers(final Typo3Entry t) {
         return modifiers.stream().reduce(Function.identity(), Function::compose).apply(t);
     }
@@ -166,7 +177,7 @@ public class ExportTypo3Bibtex extends Export {
                 "In case this happens, the rule might have be removed."
         );
         // Parse the variables defined in MYabrv.bib
-        final Map<String, String> variables = readVariablesFromBibtexFile(new File(BibtexViewer.BIBTEX_DIR, VariablesFile));
+        final Map<String, String> variables = getVariables();
 
         // Transform all Bibtex-Entries to Typo3Entries, filter them and apply all modifiers.
         final List<Typo3Entry> typo3Entries = entries.values().stream()
@@ -194,19 +205,19 @@ public class ExportTypo3Bibtex extends Export {
         System.out.println(uploadInstructions);
     }
 
-    public static boolean exportEntriesOfDirectory(List<Typo3Entry> typo3Entries, final Typo3Directory t3dir) {
+    public boolean exportEntriesOfDirectory(List<Typo3Entry> typo3Entries, final Typo3Directory t3dir) {
         typo3Entries = Util.filter(typo3Entries, t3dir.belongsToDirectory());
 
         final File file = t3dir.getAbsolutePathToFile();
         boolean exportedAFile = false;
 
-        // Generate the typo3-conforming Bibtex source code.
-        final String typo3 = typo3Entries.stream()
+        // The typo3-conforming Bibtex source code is written entry by entry below.
+        final boolean blank = typo3Entries.stream()
                 .map(Typo3Entry::toString)
-                .reduce("", (a, b) -> a + "\n\n" + b);
+                .allMatch(String::isBlank);
 
         System.out.println("=== EXPORTING " + t3dir.generatedFileName() + " ===");
-        if (!typo3.isBlank()) {
+        if (!blank) {
             // Check if we have some duplicates left that were not resolved.
             final int duplicates = Util.getDuplicates(typo3Entries, (a, b) -> {
                 if (a.title.isBlank() && b.title.isBlank()) {
@@ -226,7 +237,13 @@ public class ExportTypo3Bibtex extends Export {
                 System.err.println("  There were unresolved duplicates that can cause problems when imported with TYPO3!");
             }
 
-            writeToFileInUTF8(file, typo3);
+            final List<Typo3Entry> entriesToWrite = typo3Entries;
+            writeToFileInUTF8(file, typo3 -> {
+                for (Typo3Entry entry : entriesToWrite) {
+                    typo3.write("\n\n");
+                    typo3.write(entry.toString());
+                }
+            });
             exportedAFile = true;
         } else {
             System.out.println("  No entries given, nothing to do.");
@@ -236,6 +253,14 @@ public class ExportTypo3Bibtex extends Export {
         return exportedAFile;
     }
 
+    /**
+     * Returns the variables defined in the variables file, which is read again
+     * only if it changed since it was read the last time.
+     */
+    static Map<String, String> getVariables() {
+        return VARIABLES.get(new File(BibtexViewer.BIBTEX_DIR, VariablesFile));
+    }
+
     static Map<String, String> readVariablesFromBibtexFile(File pathToBibtex) {
         final Map<String, String> vars = new HashMap<>();
 
@@ -0,0 +1,119 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes JSON to a writer while it is generated. Commas between values are
+ * inserted automatically. Strings are escaped such that the JSON can also be
+ * embedded in JavaScript and HTML.
+ */
+class JSONWriter {
+
+	private final Writer out;
+
+	/** Whether the next value is the first one in its object or array. */
+	private boolean first = true;
+
+	JSONWriter(Writer out) {
+		this.out = out;
+	}
+
+	JSONWriter beginObject() throws IOException {
+		separate();
+		out.write('{');
+		first = true;
+		return this;
+	}
+
+	JSONWriter endObject() throws IOException {
+		out.write('}');
+		first = false;
+		return this;
+	}
+
+	JSONWriter beginArray() throws IOException {
+		separate();
+		out.write('[');
+		first = true;
+		return this;
+	}
+
+	JSONWriter endArray() throws IOException {
+		out.write(']');
+		first = false;
+		return this;
+	}
+
+	/**
+	 * Writes the name of the next value in an object.
+	 */
+	JSONWriter name(String name) throws IOException {
+		separate();
+		string(name);
+		out.write(':');
+		first = true;
+		return this;
+	}
+
+	JSONWriter value(String value) throws IOException {
+		separate();
+		if (value == null) {
+			out.write("null");
+		} else {
+			string(value);
+		}
+		return this;
+	}
+
+	JSONWriter value(long value) throws IOException {
+		separate();
+		out.write(Long.toString(value));
+		return this;
+	}
+
+	JSONWriter value(boolean value) throws IOException {
+		separate();
+		out.write(value ? "true" : "false");
+		return this;
+	}
+
+	private void separate() throws IOException {
+		if (!first) {
+			out.write(',');
+		}
+		first = false;
+	}
+
+	private void string(String s) throws IOException {
+		out.write('"');
+		int start = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			String escaped;
+			if (c == '"') {
+				escaped = "\\\"";
+			} else if (c == '\\') {
+				escaped = "\\\\";
+			} else if (c == '/' && i > 0 && s.charAt(i - 1) == '<') {
+				// no "</script>" within embedded JSON
+				escaped = "\\/";
+			} else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+				escaped = String.format("\\u%04x", (int) c);
+			} else {
+				continue;
+			}
+			out.write(s, start, i - start);
+			out.write(escaped);
+			start = i + 1;
+		}
+		out.write(s, start, s.length() - start);
+		out.write('"');
+	}
+}
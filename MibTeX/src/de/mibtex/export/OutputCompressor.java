@@ -0,0 +1,137 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex.export;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a gzip-compressed copy next to each output in the output directory
+ * (e.g., index.html.gz for index.html), such that a web server can serve the
+ * compressed copy instead of compressing the output on every request. An output
+ * is only compressed again if it has been replaced since its copy has been
+ * written. Outputs are compressed in background threads while the exporters
+ * render further outputs.
+ */
+class OutputCompressor {
+
+	private final OutputManifest manifest;
+
+	private final ExecutorService executor;
+
+	private final Queue<Future<?>> pending = new ConcurrentLinkedQueue<>();
+
+	OutputCompressor(OutputManifest manifest, boolean parallel) {
+		this.manifest = manifest;
+		if (parallel) {
+			executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+				Thread thread = new Thread(r, "OutputCompressor");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			executor = null;
+		}
+	}
+
+	/**
+	 * Compresses the given output if it has been replaced or its compressed copy
+	 * is missing or older than the output. The copy has the same owner as the
+	 * output.
+	 */
+	void compress(File output, boolean replaced, String owner) {
+		if (!manifest.contains(output)) {
+			return;
+		}
+		File compressed = getCompressedFile(output);
+		// the copy is an output as well, such that it is removed with the output
+		manifest.keep(compressed, owner);
+		if (!replaced && compressed.lastModified() >= output.lastModified()) {
+			return;
+		}
+		if (executor == null) {
+			write(output, compressed);
+		} else {
+			pending.add(executor.submit(() -> write(output, compressed)));
+		}
+	}
+
+	/**
+	 * Records that the compressed copy of an output that has not been written
+	 * again is still up to date.
+	 */
+	void keep(File output, String owner) {
+		File compressed = getCompressedFile(output);
+		if (compressed.exists()) {
+			manifest.keep(compressed, owner);
+		} else if (output.exists()) {
+			compress(output, false, owner);
+		}
+	}
+
+	/**
+	 * Waits until all outputs have been compressed.
+	 */
+	void await() {
+		Future<?> future;
+		while ((future = pending.poll()) != null) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+			}
+		}
+	}
+
+	private static File getCompressedFile(File output) {
+		return new File(output.getParentFile(), output.getName() + ".gz");
+	}
+
+	private static void write(File output, File compressed) {
+		Path temporaryPath = new File(compressed.getParentFile(), "." + compressed.getName() + ".tmp").toPath();
+		try {
+			try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)),
+					1 << 16) {
+				{
+					def.setLevel(Deflater.BEST_COMPRESSION);
+				}
+			}) {
+				Files.copy(output.toPath(), out);
+			}
+			try {
+				Files.move(temporaryPath, compressed.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryPath, compressed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			System.out.println("IOException for " + compressed);
+			try {
+				Files.deleteIfExists(temporaryPath);
+			} catch (IOException e2) {
+				// the temporary file is overwritten in the next run
+			}
+		}
+	}
+}
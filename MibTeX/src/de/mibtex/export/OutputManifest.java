@@ -0,0 +1,257 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex.export;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.mibtex.FileUtils;
+
+/**
+ * The files generated in the output directory with a hash of their content and
+ * their size. Exporters compare the hash of a new output with the manifest
+ * instead of reading the old output from disk. Outputs of earlier runs that are
+ * not generated anymore (e.g., the page of a removed author) are deleted.
+ * Each output is owned by the format that generated it (e.g., HTML), such that
+ * a run only deletes outputs of the formats it has run. The manifest
+ * is stored next to the BibTeX file, such that it is not published with the
+ * outputs.
+ */
+class OutputManifest {
+
+	private static final int VERSION = 2;
+
+	/** The hash of empty content. */
+	static final long EMPTY_HASH = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final Path dir;
+
+	private final File file;
+
+	/**
+	 * The folder in the output directory in which earlier versions stored the
+	 * manifest and the other data kept between runs.
+	 */
+	private final File legacyDir;
+
+	private final Map<String, Output> oldOutputs = new HashMap<>();
+
+	/** The outputs generated since the manifest was written the last time. */
+	private final Map<String, Output> outputs = new ConcurrentHashMap<>();
+
+	private static class Output {
+		final long hash;
+		final long size;
+		final String owner;
+
+		Output(long hash, long size, String owner) {
+			this.hash = hash;
+			this.size = size;
+			this.owner = owner;
+		}
+	}
+
+	OutputManifest(String outputDir) {
+		this.dir = Paths.get(outputDir).toAbsolutePath().normalize();
+		this.file = new File(FileUtils.getOutputCacheDir(), "outputs.manifest");
+		this.legacyDir = new File(outputDir, ".mibtex");
+		read();
+	}
+
+	/**
+	 * Returns the 64-bit FNV-1a hash of some content followed by the given
+	 * character, given the hash of that content. Starting with
+	 * {@link #EMPTY_HASH}, the hash is computed character by character while the
+	 * content is written.
+	 */
+	static long hash(long hash, char c) {
+		return (hash ^ c) * FNV_PRIME;
+	}
+
+	/**
+	 * Returns whether the given file is a recorded output. Only files in the
+	 * output directory are recorded.
+	 */
+	boolean contains(File output) {
+		String name = getName(output);
+		return name != null && (outputs.containsKey(name) || oldOutputs.containsKey(name));
+	}
+
+	/**
+	 * Returns whether the given output has been recorded with the given hash and
+	 * still has the recorded size (i.e., it has not been deleted or modified
+	 * since).
+	 */
+	boolean isUnchanged(File output, long hash) {
+		String name = getName(output);
+		if (name == null) {
+			return false;
+		}
+		Output recorded = outputs.getOrDefault(name, oldOutputs.get(name));
+		return recorded != null && recorded.hash == hash && recorded.size == output.length();
+	}
+
+	/**
+	 * Records that the given output has been written by the given owner with the
+	 * given content hash or that it already had this content.
+	 */
+	void setWritten(File output, long hash, String owner) {
+		String name = getName(output);
+		if (name != null) {
+			outputs.put(name, new Output(hash, output.length(), owner));
+		}
+	}
+
+	/**
+	 * Records that the given output is still generated, although the exporter
+	 * did not write it again, because it knows that it did not change.
+	 */
+	void keep(File output, String owner) {
+		String name = getName(output);
+		if (name != null) {
+			Output recorded = oldOutputs.get(name);
+			// outputs of runs without a manifest have no hash and are written next time
+			outputs.putIfAbsent(name, recorded == null ? new Output(0, -1, owner)
+					: new Output(recorded.hash, recorded.size, owner));
+		}
+	}
+
+	/**
+	 * Deletes the outputs of earlier runs of the given owners that have not been
+	 * generated since the manifest was written the last time. If clean is true,
+	 * also deletes all other files in the output directory that are not outputs
+	 * of other owners.
+	 */
+	void removeOrphans(Collection<String> owners, boolean clean) {
+		oldOutputs.entrySet().removeIf(output -> {
+			if (!isOwnedBy(output.getValue(), owners) || outputs.containsKey(output.getKey())) {
+				return false;
+			}
+			delete(dir.resolve(output.getKey()).toFile());
+			return true;
+		});
+		if (clean) {
+			File[] files = dir.toFile().listFiles();
+			if (files != null) {
+				for (File output : files) {
+					String name = getName(output);
+					if (output.isFile() && !outputs.containsKey(name) && !oldOutputs.containsKey(name)) {
+						delete(output);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the given output is owned by one of the given owners.
+	 * Earlier versions recorded all formats of a run (e.g., "HTML,JSON") as the
+	 * owner, of which all must be given.
+	 */
+	private static boolean isOwnedBy(Output output, Collection<String> owners) {
+		return owners.containsAll(Arrays.asList(output.owner.split(",")));
+	}
+
+	private static void delete(File output) {
+		if (output.delete()) {
+			System.out.println("Removing " + output);
+		}
+	}
+
+	/**
+	 * Stores the outputs for the next run. Outputs of earlier runs that have not
+	 * been removed are kept.
+	 */
+	synchronized void write() {
+		Map<String, Output> allOutputs = new HashMap<>(oldOutputs);
+		allOutputs.putAll(outputs);
+		file.getParentFile().mkdirs();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(VERSION);
+			out.writeInt(allOutputs.size());
+			for (Map.Entry<String, Output> output : allOutputs.entrySet()) {
+				out.writeUTF(output.getKey());
+				out.writeLong(output.getValue().hash);
+				out.writeLong(output.getValue().size);
+				out.writeUTF(output.getValue().owner);
+			}
+		} catch (IOException e) {
+			System.out.println("IOException for " + file);
+			file.delete();
+			return;
+		}
+		oldOutputs.clear();
+		oldOutputs.putAll(allOutputs);
+		outputs.clear();
+		removeLegacyDir();
+	}
+
+	private void read() {
+		File file = this.file;
+		if (!file.exists()) {
+			// continue with the manifest of an earlier version, if there is one
+			file = new File(legacyDir, this.file.getName());
+			if (!file.exists()) {
+				return;
+			}
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != VERSION) {
+				return;
+			}
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				oldOutputs.put(in.readUTF(), new Output(in.readLong(), in.readLong(), in.readUTF()));
+			}
+		} catch (IOException | RuntimeException e) {
+			System.out.println("IOException for " + file);
+			oldOutputs.clear();
+		}
+	}
+
+	/**
+	 * Removes the data that earlier versions kept in the output directory (i.e.,
+	 * the manifest, the entries of each exporter, and the document indexes).
+	 */
+	private void removeLegacyDir() {
+		File[] files = legacyDir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File legacyFile : files) {
+			String name = legacyFile.getName();
+			if (name.endsWith(".manifest") || name.endsWith(".entries") || name.endsWith(".index")) {
+				delete(legacyFile);
+			}
+		}
+		legacyDir.delete();
+	}
+
+	/**
+	 * Returns the name of the given file relative to the output directory or
+	 * null if the file is not in the output directory.
+	 */
+	private String getName(File output) {
+		Path path = output.toPath().toAbsolutePath().normalize();
+		return path.startsWith(dir) && !path.equals(dir) ? dir.relativize(path).toString() : null;
+	}
+}
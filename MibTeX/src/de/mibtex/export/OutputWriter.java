@@ -0,0 +1,182 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex.export;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes an output while it is rendered, such that outputs do not need to be
+ * built in memory as a whole. The content is hashed on the way and kept in
+ * memory as long as it is small. Larger content is written to a temporary file
+ * next to the output. When the writer is committed, the content replaces the
+ * output, unless the {@link OutputManifest} shows that the output already has
+ * this content. Thus, small outputs that did not change are never written.
+ */
+class OutputWriter extends Writer {
+
+	/** The number of characters kept in memory before they are written. */
+	private static final int MEMORY_LIMIT = 1 << 18;
+
+	private final File path;
+
+	private final Path temporaryPath;
+
+	private final OutputManifest manifest;
+
+	private final String owner;
+
+	private final CharsetEncoder encoder;
+
+	/** The content while it is kept in memory or null once it is written. */
+	private StringBuilder buffer = new StringBuilder();
+
+	/** The writer to the temporary file or null while the content is in memory. */
+	private Writer out;
+
+	private long hash = OutputManifest.EMPTY_HASH;
+
+	private boolean committed;
+
+	OutputWriter(File path, CharsetEncoder encoder, OutputManifest manifest, String owner) throws IOException {
+		this.path = path;
+		this.temporaryPath = new File(path.getParentFile(), "." + path.getName() + ".tmp").toPath();
+		this.manifest = manifest;
+		this.owner = owner;
+		this.encoder = encoder;
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		hash = OutputManifest.hash(hash, (char) c);
+		if (out == null) {
+			buffer.append((char) c);
+			spillIfLarge();
+		} else {
+			out.write(c);
+		}
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		for (int i = offset; i < offset + length; i++) {
+			hash = OutputManifest.hash(hash, chars[i]);
+		}
+		if (out == null) {
+			buffer.append(chars, offset, length);
+			spillIfLarge();
+		} else {
+			out.write(chars, offset, length);
+		}
+	}
+
+	@Override
+	public void write(String s, int offset, int length) throws IOException {
+		for (int i = offset; i < offset + length; i++) {
+			hash = OutputManifest.hash(hash, s.charAt(i));
+		}
+		if (out == null) {
+			buffer.append(s, offset, offset + length);
+			spillIfLarge();
+		} else {
+			out.write(s, offset, length);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (out != null) {
+			out.flush();
+		}
+	}
+
+	private void spillIfLarge() throws IOException {
+		if (buffer.length() > MEMORY_LIMIT) {
+			openTemporaryFile();
+		}
+	}
+
+	/**
+	 * Opens the temporary file and writes the content kept in memory to it, if
+	 * this has not been done yet.
+	 */
+	private void openTemporaryFile() throws IOException {
+		if (out != null) {
+			return;
+		}
+		path.getParentFile().mkdirs();
+		FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		out = new BufferedWriter(Channels.newWriter(channel, encoder, -1));
+		out.append(buffer);
+		buffer = null;
+	}
+
+	private void closeTemporaryFile() throws IOException {
+		openTemporaryFile();
+		out.close();
+	}
+
+	/**
+	 * Replaces the output with the written content if it differs from the
+	 * current content of the output. Returns whether the output has been
+	 * replaced.
+	 */
+	boolean commit() throws IOException {
+		boolean unchanged;
+		if (manifest.contains(path)) {
+			unchanged = manifest.isUnchanged(path, hash);
+		} else {
+			// no manifest from an earlier run or not in the output directory
+			closeTemporaryFile();
+			unchanged = path.exists() && Files.mismatch(temporaryPath, path.toPath()) == -1;
+		}
+		if (unchanged) {
+			if (out != null) {
+				out.close();
+				Files.delete(temporaryPath);
+			}
+			System.out.println(path + " unchanged: No update required!");
+		} else {
+			closeTemporaryFile();
+			System.out.println("Updating " + path);
+			try {
+				Files.move(temporaryPath, path.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryPath, path.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		committed = true;
+		manifest.setWritten(path, hash, owner);
+		return !unchanged;
+	}
+
+	/**
+	 * Discards the written content unless the writer has been committed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!committed && out != null) {
+			try {
+				out.close();
+			} finally {
+				Files.deleteIfExists(temporaryPath);
+			}
+		}
+	}
+}
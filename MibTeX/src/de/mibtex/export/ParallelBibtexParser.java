@@ -0,0 +1,182 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex.export;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import de.mibtex.BibtexEntry;
+import de.mibtex.BibtexReader;
+
+/**
+ * Parses a BibTeX file in chunks on all cores. The file is split at the
+ * beginning of top-level objects (i.e., at "@type{"). Each chunk is prefixed
+ * with all string definitions that precede it in the file, such that strings
+ * are resolved as in a sequential parse. The entries of all chunks are returned
+ * in their original order.
+ */
+class ParallelBibtexParser {
+
+	/**
+	 * Minimum number of characters per chunk, smaller files are not worth
+	 * splitting.
+	 */
+	private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+	private static final Pattern CROSSREF = Pattern.compile("crossref", Pattern.CASE_INSENSITIVE);
+
+	private final String content;
+
+	/** Start and end index of each top-level object in the file. */
+	private final List<int[]> objects = new ArrayList<>();
+
+	/** Start and end index of each string definition in the file. */
+	private final List<int[]> strings = new ArrayList<>();
+
+	private ParallelBibtexParser(String content) {
+		this.content = content;
+	}
+
+	/**
+	 * Returns the entries of the given BibTeX file or null if the file cannot
+	 * be parsed in chunks. In the latter case, the caller should parse the file
+	 * sequentially (which also reports parse errors with correct line numbers).
+	 */
+	static List<BibtexEntry> parse(String content) {
+		// cross references may point to entries in other chunks
+		if (content.length() < 2 * MIN_CHUNK_SIZE || CROSSREF.matcher(content).find()) {
+			return null;
+		}
+		ParallelBibtexParser parser = new ParallelBibtexParser(content);
+		if (!parser.split()) {
+			return null;
+		}
+		List<String> chunks = parser.getChunks();
+		List<List<BibtexEntry>> parsedChunks = chunks.parallelStream()
+				.map(ParallelBibtexParser::parseChunk)
+				.collect(Collectors.toList());
+		// like BibtexReader, keep only the first entry for each key
+		Set<String> keys = new HashSet<>();
+		List<BibtexEntry> parsedEntries = new ArrayList<>();
+		for (List<BibtexEntry> parsedChunk : parsedChunks) {
+			if (parsedChunk == null) {
+				return null;
+			}
+			for (BibtexEntry entry : parsedChunk) {
+				if (keys.add(entry.key.toLowerCase())) {
+					parsedEntries.add(entry);
+				}
+			}
+		}
+		return parsedEntries;
+	}
+
+	private static List<BibtexEntry> parseChunk(String chunk) {
+		try {
+			List<BibtexEntry> parsedEntries = new ArrayList<>();
+			new BibtexReader(CharBuffer.wrap(chunk)).read(parsedEntries::add);
+			return parsedEntries;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Finds all top-level objects in the file. Returns false if an object is not
+	 * closed properly.
+	 */
+	private boolean split() {
+		int i = content.indexOf('@');
+		while (i >= 0) {
+			int j = i + 1;
+			while (j < content.length() && Character.isLetter(content.charAt(j))) {
+				j++;
+			}
+			String type = content.substring(i + 1, j);
+			while (j < content.length() && Character.isWhitespace(content.charAt(j))) {
+				j++;
+			}
+			if (j >= content.length() || (content.charAt(j) != '{' && content.charAt(j) != '(')) {
+				i = content.indexOf('@', j);
+				continue;
+			}
+			int end = findEnd(j);
+			if (end < 0) {
+				return false;
+			}
+			int[] object = { i, end };
+			objects.add(object);
+			if ("string".equalsIgnoreCase(type)) {
+				strings.add(object);
+			}
+			i = content.indexOf('@', end);
+		}
+		return !objects.isEmpty();
+	}
+
+	/**
+	 * Returns the index after the delimiter closing the object that is opened
+	 * at the given index or -1 if there is none. Escaped characters are skipped
+	 * like in {@link BibtexReader}.
+	 */
+	private int findEnd(int open) {
+		boolean parentheses = content.charAt(open) == '(';
+		boolean quoted = false;
+		int depth = parentheses ? 0 : 1;
+		for (int i = open + 1; i < content.length(); i++) {
+			char c = content.charAt(i);
+			if (BibtexReader.isEscaped(content, i)) {
+				continue;
+			} else if (c == '{') {
+				depth++;
+			} else if (c == '}') {
+				depth--;
+				if (!parentheses && depth == 0) {
+					return i + 1;
+				}
+			} else if (parentheses && depth == 0) {
+				if (c == '"') {
+					quoted = !quoted;
+				} else if (c == ')' && !quoted) {
+					return i + 1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Groups the objects into chunks of similar size, one chunk per core and
+	 * a few more to balance the load.
+	 */
+	private List<String> getChunks() {
+		int chunkCount = 4 * ForkJoinPool.commonPool().getParallelism();
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, content.length() / chunkCount);
+		List<String> chunks = new ArrayList<>();
+		StringBuilder precedingStrings = new StringBuilder();
+		int nextString = 0;
+		int chunkStart = 0;
+		for (int i = 0; i <= objects.size(); i++) {
+			int chunkEnd = i < objects.size() ? objects.get(i)[0] : content.length();
+			if (chunkEnd - chunkStart >= chunkSize || i == objects.size()) {
+				for (; nextString < strings.size() && strings.get(nextString)[0] < chunkStart; nextString++) {
+					int[] string = strings.get(nextString);
+					precedingStrings.append(content, string[0], string[1]).append('\n');
+				}
+				chunks.add(precedingStrings + content.substring(chunkStart, chunkEnd));
+				chunkStart = chunkEnd;
+			}
+		}
+		return chunks;
+	}
+}
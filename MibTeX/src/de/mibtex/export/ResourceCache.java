@@ -0,0 +1,60 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex.export;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Auxiliary files read by the exporters (e.g., the variables defined in
+ * MYabrv.bib), shared by all exporters and threads. A file is read when it is
+ * needed for the first time and again only after its modification time or size
+ * changed. The content must not be modified by its users.
+ */
+class ResourceCache<T> {
+
+	private final Function<File, T> reader;
+
+	private final Map<File, Resource<T>> resources = new ConcurrentHashMap<>();
+
+	private static class Resource<T> {
+		final long lastModified;
+		final long size;
+		final T content;
+
+		Resource(long lastModified, long size, T content) {
+			this.lastModified = lastModified;
+			this.size = size;
+			this.content = content;
+		}
+	}
+
+	/**
+	 * Creates a cache for files read by the given reader.
+	 */
+	ResourceCache(Function<File, T> reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Returns the content of the given file, which is only read if it changed
+	 * since it has been read the last time.
+	 */
+	T get(File file) {
+		File key = file.getAbsoluteFile();
+		return resources.compute(key, (f, resource) -> {
+			long lastModified = f.lastModified();
+			long size = f.length();
+			if (resource != null && resource.lastModified == lastModified && resource.size == size) {
+				return resource;
+			}
+			return new Resource<>(lastModified, size, reader.apply(f));
+		}).content;
+	}
+}
@@ -0,0 +1,235 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex.export;
+
+import java.io.IOException;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The text of the searchable columns of all entries, such that a page does not
+ * need to extract it from the markup of the entries. The text is stripped of
+ * markup and entities and in lower case. For authors and titles, an inverted
+ * index maps each sequence of three characters (trigram) to the entries whose
+ * text contains it, such that a search only needs to check entries containing
+ * all trigrams of the searched text. For each column of the table, the index
+ * also contains the entries in ascending order, such that a page can sort the
+ * table without comparing entries.
+ */
+class SearchIndex {
+
+	static final int AUTHORS = 0;
+
+	static final int TITLE = 1;
+
+	static final int VENUE = 2;
+
+	static final int TAGS = 3;
+
+	private static final String[] NAMES = { "authors", "title", "venue", "tags" };
+
+	/** The columns with an index of their trigrams. */
+	private static final int[] INDEXED = { AUTHORS, TITLE };
+
+	private static final Map<String, String> ENTITIES = new HashMap<>();
+
+	static {
+		ENTITIES.put("amp", "&");
+		ENTITIES.put("lt", "<");
+		ENTITIES.put("gt", ">");
+		ENTITIES.put("quot", "\"");
+		ENTITIES.put("apos", "'");
+		ENTITIES.put("nbsp", " ");
+		ENTITIES.put("auml", "ä");
+		ENTITIES.put("ouml", "ö");
+		ENTITIES.put("uuml", "ü");
+		ENTITIES.put("Auml", "Ä");
+		ENTITIES.put("Ouml", "Ö");
+		ENTITIES.put("Uuml", "Ü");
+		ENTITIES.put("szlig", "ß");
+	}
+
+	private final List<List<String>> columns = new ArrayList<>();
+
+	private final List<Map<String, Postings>> trigrams = new ArrayList<>();
+
+	private final List<Integer> citations = new ArrayList<>();
+
+	private final List<Integer> years = new ArrayList<>();
+
+	/** The entries containing a trigram in ascending order. */
+	private static class Postings {
+		int[] entries = new int[4];
+		int size;
+
+		void add(int entry) {
+			if (size > 0 && entries[size - 1] == entry) {
+				return;
+			}
+			if (size == entries.length) {
+				entries = Arrays.copyOf(entries, 2 * size);
+			}
+			entries[size++] = entry;
+		}
+	}
+
+	SearchIndex() {
+		for (int i = 0; i < NAMES.length; i++) {
+			columns.add(new ArrayList<>());
+		}
+		for (int i = 0; i < INDEXED.length; i++) {
+			trigrams.add(new LinkedHashMap<>());
+		}
+	}
+
+	/**
+	 * Adds the next entry given the markup of its columns and the numbers it is
+	 * sorted by in the citations and year columns.
+	 */
+	void add(String authors, String title, String venue, String tags, int citations, int year) {
+		int entry = columns.get(0).size();
+		this.citations.add(citations);
+		this.years.add(year);
+		String[] texts = { normalize(authors), normalize(title), normalize(venue), normalize(tags) };
+		for (int i = 0; i < texts.length; i++) {
+			columns.get(i).add(texts[i]);
+		}
+		for (int i = 0; i < INDEXED.length; i++) {
+			String text = texts[INDEXED[i]];
+			Map<String, Postings> index = trigrams.get(i);
+			for (int j = 0; j + 3 <= text.length(); j++) {
+				index.computeIfAbsent(text.substring(j, j + 3), t -> new Postings()).add(entry);
+			}
+		}
+	}
+
+	/**
+	 * Writes the columns, the trigram index, and the orders of the six columns
+	 * of the table. The entries containing a trigram are written as differences
+	 * to the previous entry.
+	 */
+	void write(JSONWriter json) throws IOException {
+		json.beginObject();
+		json.name("columns").beginObject();
+		for (int i = 0; i < NAMES.length; i++) {
+			json.name(NAMES[i]).beginArray();
+			for (String text : columns.get(i)) {
+				json.value(text);
+			}
+			json.endArray();
+		}
+		json.endObject();
+		json.name("trigrams").beginObject();
+		for (int i = 0; i < INDEXED.length; i++) {
+			json.name(NAMES[INDEXED[i]]).beginObject();
+			for (Map.Entry<String, Postings> trigram : trigrams.get(i).entrySet()) {
+				json.name(trigram.getKey()).beginArray();
+				Postings postings = trigram.getValue();
+				int previous = 0;
+				for (int j = 0; j < postings.size; j++) {
+					json.value(postings.entries[j] - previous);
+					previous = postings.entries[j];
+				}
+				json.endArray();
+			}
+			json.endObject();
+		}
+		json.endObject();
+		json.name("orders").beginArray();
+		for (int i = 0; i < NAMES.length; i++) {
+			writeOrder(json, getTextOrder(columns.get(i)));
+		}
+		writeOrder(json, Comparator.comparing(citations::get));
+		writeOrder(json, Comparator.comparing(years::get));
+		json.endArray();
+		json.endObject();
+	}
+
+	/**
+	 * Returns the order of the given texts in the collation of the default
+	 * locale.
+	 */
+	private static Comparator<Integer> getTextOrder(List<String> texts) {
+		Collator collator = Collator.getInstance();
+		CollationKey[] keys = new CollationKey[texts.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = collator.getCollationKey(texts.get(i));
+		}
+		return (a, b) -> keys[a].compareTo(keys[b]);
+	}
+
+	/**
+	 * Writes the entries sorted by the given order. Equal entries stay in the
+	 * order in which they were added.
+	 */
+	private void writeOrder(JSONWriter json, Comparator<Integer> order) throws IOException {
+		Integer[] entries = new Integer[citations.size()];
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = i;
+		}
+		Arrays.sort(entries, order);
+		json.beginArray();
+		for (int entry : entries) {
+			json.value(entry);
+		}
+		json.endArray();
+	}
+
+	/**
+	 * Returns the text of the given markup as shown by a browser in lower case,
+	 * with all whitespace replaced by single spaces.
+	 */
+	static String normalize(String html) {
+		StringBuilder text = new StringBuilder(html.length());
+		for (int i = 0; i < html.length(); i++) {
+			char c = html.charAt(i);
+			if (c == '<' && i + 1 < html.length() && isTagStart(html.charAt(i + 1))) {
+				int end = html.indexOf('>', i);
+				if (end >= 0) {
+					i = end;
+					continue;
+				}
+			} else if (c == '&') {
+				int end = html.indexOf(';', i);
+				String decoded = end > i + 1 ? decode(html.substring(i + 1, end)) : null;
+				if (decoded != null) {
+					text.append(decoded);
+					i = end;
+					continue;
+				}
+			}
+			text.append(c);
+		}
+		return text.toString().replaceAll("\\s+", " ").trim().toLowerCase(Locale.ROOT);
+	}
+
+	private static boolean isTagStart(char c) {
+		return Character.isLetter(c) || c == '/' || c == '!';
+	}
+
+	private static String decode(String entity) {
+		if (entity.startsWith("#")) {
+			try {
+				int codePoint = entity.startsWith("#x") || entity.startsWith("#X")
+						? Integer.parseInt(entity.substring(2), 16)
+						: Integer.parseInt(entity.substring(1));
+				return new String(Character.toChars(codePoint));
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+		return ENTITIES.get(entity);
+	}
+}
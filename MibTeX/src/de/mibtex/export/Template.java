@@ -0,0 +1,140 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page with slots (e.g., INSERT_BIB_PATH) that are filled while the page is
+ * written. The template is split into static segments and slots once, such that
+ * pages are written without replacing the slots in a copy of the whole page. A
+ * template in the folder resources of the working directory takes precedence
+ * over the one on the classpath, such that templates can be customized.
+ */
+class Template {
+
+	private static final ResourceCache<String> FILES = new ResourceCache<>(Template::read);
+
+	private final String name;
+
+	private final String[] slotNames;
+
+	private volatile Compiled compiled;
+
+	private static class Compiled {
+		/** The text or null if the template has been read from the classpath. */
+		final String text;
+		/** The static text before each slot and after the last slot. */
+		final String[] segments;
+		final String[] slots;
+
+		Compiled(String text, String[] segments, String[] slots) {
+			this.text = text;
+			this.segments = segments;
+			this.slots = slots;
+		}
+	}
+
+	/**
+	 * Creates the template in the file with the given name in the folder
+	 * resources with the given slots.
+	 */
+	Template(String name, String... slotNames) {
+		this.name = name;
+		this.slotNames = slotNames;
+	}
+
+	/**
+	 * Writes the template with each slot replaced by the content given for its
+	 * name. Slots without content are written as they are.
+	 */
+	void writeTo(Writer out, Map<String, Export.Content> contents) throws IOException {
+		Compiled template = getCompiled();
+		for (int i = 0; i < template.slots.length; i++) {
+			out.write(template.segments[i]);
+			Export.Content content = contents.get(template.slots[i]);
+			if (content == null) {
+				out.write(template.slots[i]);
+			} else {
+				content.writeTo(out);
+			}
+		}
+		out.write(template.segments[template.slots.length]);
+	}
+
+	private Compiled getCompiled() {
+		Compiled template = compiled;
+		File file = new File("resources", name);
+		if (file.exists()) {
+			String text = FILES.get(file);
+			if (template == null || template.text != text) {
+				template = compiled = compile(text, true);
+			}
+		} else if (template == null || template.text != null) {
+			template = compiled = compile(readResource(), false);
+		}
+		return template;
+	}
+
+	private String readResource() {
+		try (InputStream in = Template.class.getResourceAsStream("/resources/" + name)) {
+			if (in == null) {
+				System.out.println("Not Found resources/" + name);
+				return "";
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			System.out.println("IOException for resources/" + name);
+			return "";
+		}
+	}
+
+	private static String read(File file) {
+		try {
+			return Files.readString(file.toPath(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			System.out.println("IOException for " + file);
+			return "";
+		}
+	}
+
+	/**
+	 * Splits the text at the first of the slot names, and so on.
+	 */
+	private Compiled compile(String text, boolean fromFile) {
+		List<String> segments = new ArrayList<>();
+		List<String> slots = new ArrayList<>();
+		int start = 0;
+		while (true) {
+			int next = -1;
+			String slot = null;
+			for (String slotName : slotNames) {
+				int index = text.indexOf(slotName, start);
+				if (index >= 0 && (next < 0 || index < next)) {
+					next = index;
+					slot = slotName;
+				}
+			}
+			if (slot == null) {
+				break;
+			}
+			segments.add(text.substring(start, next));
+			slots.add(slot);
+			start = next + slot.length();
+		}
+		segments.add(text.substring(start));
+		return new Compiled(fromFile ? text : null, segments.toArray(new String[0]), slots.toArray(new String[0]));
+	}
+}
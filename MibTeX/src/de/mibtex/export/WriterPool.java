@@ -0,0 +1,87 @@
+/* MibTeX - Minimalistic tool to manage your references with BibTeX
+ *
+ * Distributed under BSD 3-Clause License, available at Github
+ *
+ * https://github.com/tthuem/MibTeX
+ */
+package de.mibtex.export;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A bounded pool of threads writing the outputs of an exporter, such that the
+ * next outputs can be prepared while previous ones are written. If too many
+ * writes are pending, the submitting thread writes its output itself and thus
+ * stops preparing outputs until the writers have caught up. Without
+ * parallelism, each write is done right away by the calling thread. A write
+ * that fails does not stop the other writes, but is reported when the pool is
+ * closed, no matter which thread did the write.
+ */
+class WriterPool implements AutoCloseable {
+
+	private static final int WRITERS = 4;
+
+	private static final int PENDING_WRITES = 16;
+
+	private final ThreadPoolExecutor executor;
+
+	/** The first exception thrown by a write. */
+	private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+	WriterPool(boolean parallel) {
+		if (parallel) {
+			executor = new ThreadPoolExecutor(WRITERS, WRITERS, 0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(PENDING_WRITES), new ThreadPoolExecutor.CallerRunsPolicy());
+		} else {
+			executor = null;
+		}
+	}
+
+	/**
+	 * Writes an output in one of the writer threads.
+	 */
+	void submit(Runnable write) {
+		Runnable task = () -> {
+			try {
+				write.run();
+			} catch (RuntimeException e) {
+				failure.compareAndSet(null, e);
+			}
+		};
+		if (executor == null) {
+			task.run();
+		} else {
+			executor.execute(task);
+		}
+	}
+
+	/**
+	 * Waits until all submitted outputs have been written and rethrows the first
+	 * exception thrown by a write.
+	 */
+	@Override
+	public void close() {
+		awaitWrites();
+		RuntimeException e = failure.get();
+		if (e != null) {
+			throw e;
+		}
+	}
+
+	private void awaitWrites() {
+		if (executor == null) {
+			return;
+		}
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				System.out.println("Waiting for " + executor.getQueue().size() + " outputs to be written");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -7,6 +7,7 @@
 package de.mibtex.export.typo3;
 
 import de.mibtex.BibtexEntry;
+import de.mibtex.TextRewriter;
 import de.mibtex.export.ExportTypo3Bibtex;
 import org.jbibtex.BibTeXEntry;
 
@@ -34,6 +35,7 @@ public class Typo3Entry implements Comparable<Typo3Entry> {
 		TO_URL_OVERWRITES.put("&Auml;", "Ä");
 		TO_URL_OVERWRITES.put("&Ouml;", "Ö");
 		TO_URL_OVERWRITES.put("&Uuml;", "Ü");
+		TO_URL_OVERWRITES.put("&#8211;", "-");
 		TO_URL_OVERWRITES.put("&8211;", "-");
 		TO_URL_OVERWRITES.put("?", "?");
 		TO_URL_OVERWRITES.put(":", ":");
@@ -42,6 +44,8 @@ public class Typo3Entry implements Comparable<Typo3Entry> {
 		TO_URL_OVERWRITES.put("&szlig;", "ß");
 	}
 	
+	private static final TextRewriter TYPO3_SAFE = BibtexEntry.TO_URL.withOverrides(TO_URL_OVERWRITES);
+	
 	public final BibtexEntry source;
 	
 	public String type; // inproceedings, article, ...
@@ -227,7 +231,7 @@ public class Typo3Entry implements Comparable<Typo3Entry> {
 	}
 	
 	public static String makeTypo3Safe(String s) {
-		return BibtexEntry.toURL(BibtexEntry.replaceUmlauts(s.trim()), TO_URL_OVERWRITES);
+		return TYPO3_SAFE.rewrite(BibtexEntry.replaceUmlauts(s.trim()));
 	}
 	
 	private static String lookup(String variable, final Map<String, String> variables) {